@@ -1,29 +1,180 @@
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class Account implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Returned by afterWithdrawal when the account's rules refuse the withdrawal
+    protected static final long REFUSED = Long.MIN_VALUE;
+    private static final AtomicLongFieldUpdater<Account> BALANCE =
+            AtomicLongFieldUpdater.newUpdater(Account.class, "balance");
     protected final String accountNumber;
-    protected double balance;
+    protected volatile long balance; // cents, see Money
     protected final String branch;
     protected final Customer owner;
-    private final List<Transaction> transactions = new ArrayList<>();
+    // Kept in time order. Until the stored history is read, this only holds transactions added since load
+    private TransactionLedger transactions = new TransactionLedger();
+    private transient HistoryLoader historyLoader;
+    // Guards balance and history together, so a posting and its ledger row are one step
+    private final ReentrantLock lock = new ReentrantLock();
+    // Hot accounts can skip the lock: the balance is only ever changed by compare-and-set, and
+    // their ledger rows queue here until the next reader or save moves them into the ledger
+    private volatile boolean lockFree;
+    private final ConcurrentLinkedQueue<Transaction> pendingRows = new ConcurrentLinkedQueue<>();
 
-    public Account(String accountNumber, double balance, String branch, Customer owner) {
+    public Account(String accountNumber, long balance, String branch, Customer owner) {
         this.accountNumber = accountNumber;
         this.balance = balance;
         this.branch = branch;
         this.owner = owner;
     }
 
-    public void deposit(double amount) {
-        if (amount <= 0) throw new IllegalArgumentException("Amount must be > 0");
-        balance += amount;
+    /* ----- balance: the account type supplies the rules, changes are compare-and-set ----- */
+    public void deposit(long cents) {
+        long current;
+        do {
+            current = balance;
+        } while (!BALANCE.compareAndSet(this, current, afterDeposit(current, cents)));
+        markDirty();
     }
 
-    public abstract boolean withdraw(double amount);
+    // The funds check sits inside the loop, so it always judges the balance actually replaced
+    public boolean withdraw(long cents) {
+        long current, next;
+        do {
+            current = balance;
+            next = afterWithdrawal(current, cents);
+            if (next == REFUSED) return false;
+        } while (!BALANCE.compareAndSet(this, current, next));
+        markDirty();
+        return true;
+    }
+
+    /* Balance after depositing cents into current; throws if the deposit is not allowed */
+    protected long afterDeposit(long current, long cents) {
+        if (cents <= 0) throw new IllegalArgumentException("Amount must be > 0");
+        return Math.addExact(current, cents);
+    }
+
+    /* Balance after withdrawing cents from current, or REFUSED */
+    protected abstract long afterWithdrawal(long current, long cents);
+
+    /* Told of every posting that changed the balance, with the time it is recorded at */
+    protected void balanceChanged(long delta, long epochMillis) {
+    }
+
+    /* ----- postings: balance change and ledger row under the account's lock ----- */
+    void credit(TransactionType type, long cents, long epochMillis) {
+        if (lockFree) {
+            deposit(cents);
+            balanceChanged(cents, epochMillis);
+            pendingRows.add(new Transaction(type, cents, epochMillis));
+            return;
+        }
+        lock.lock();
+        try {
+            deposit(cents);
+            balanceChanged(cents, epochMillis);
+            transactions.add(type, cents, epochMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean debit(TransactionType type, long cents, long epochMillis) {
+        if (lockFree) {
+            if (!withdraw(cents)) return false;
+            balanceChanged(-cents, epochMillis);
+            pendingRows.add(new Transaction(type, cents, epochMillis));
+            return true;
+        }
+        lock.lock();
+        try {
+            if (!withdraw(cents)) return false;
+            balanceChanged(-cents, epochMillis);
+            transactions.add(type, cents, epochMillis);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Replays a posting that was applied before it was logged, without re-checking funds */
+    void forceDebit(TransactionType type, long cents, long epochMillis) {
+        lock.lock();
+        try {
+            BALANCE.addAndGet(this, -cents);
+            balanceChanged(-cents, epochMillis);
+            transactions.add(type, cents, epochMillis);
+            markDirty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ----- transfers: two accounts changed as one step ----- */
+    // Both locks are always taken in account-number order, so opposing transfers cannot deadlock.
+    // Lock-free accounts are locked too; their own postings skip the lock, which only means a
+    // reader of one of them may see the debit before the credit, never a lost or doubled amount
+    static void lockPair(Account a, Account b) {
+        Account first = a.accountNumber.compareTo(b.accountNumber) <= 0 ? a : b;
+        Account second = first == a ? b : a;
+        first.lock.lock();
+        second.lock.lock();
+    }
 
+    static void unlockPair(Account a, Account b) {
+        a.lock.unlock();
+        b.lock.unlock();
+    }
+
+    /* Debits from and credits to with paired TRANSFER_OUT / TRANSFER_IN rows; false if from refuses */
+    static boolean transfer(Account from, Account to, long cents, long epochMillis) {
+        if (from == to) throw new IllegalArgumentException("Cannot transfer to the same account");
+        lockPair(from, to);
+        try {
+            // Check the credit first, so a refused deposit never leaves the debit behind
+            to.afterDeposit(to.balance, cents);
+            if (!from.debit(TransactionType.TRANSFER_OUT, cents, epochMillis)) return false;
+            to.credit(TransactionType.TRANSFER_IN, cents, epochMillis);
+            return true;
+        } finally {
+            unlockPair(from, to);
+        }
+    }
+
+    /* Replays a transfer that was applied before it was logged, without re-checking funds */
+    static void forceTransfer(Account from, Account to, long cents, long epochMillis) {
+        lockPair(from, to);
+        try {
+            from.forceDebit(TransactionType.TRANSFER_OUT, cents, epochMillis);
+            to.credit(TransactionType.TRANSFER_IN, cents, epochMillis);
+        } finally {
+            unlockPair(from, to);
+        }
+    }
+
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    boolean isLockFree() {
+        return lockFree;
+    }
+
+    void setLockFree(boolean lockFree) {
+        this.lockFree = lockFree;
+    }
+
+    // For display; arithmetic and persistence use getBalanceCents
     public double getBalance() {
+        return Money.toDouble(balance);
+    }
+
+    public long getBalanceCents() {
         return balance;
     }
 
@@ -31,16 +182,146 @@ public abstract class Account implements Serializable {
         return accountNumber;
     }
 
+    /* A copy of the history, so readers never see it change under them */
     public List<Transaction> getTransactions() {
-        return Collections.unmodifiableList(transactions);
+        lock.lock();
+        try {
+            settle();
+            return Collections.unmodifiableList(transactions.copy(0, transactions.size()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Transactions with from <= time < to (epoch millis), found by binary search on the sorted history */
+    public List<Transaction> getTransactionsBetween(long fromMillis, long toMillis) {
+        lock.lock();
+        try {
+            settle();
+            int start = transactions.lowerBound(fromMillis);
+            int end = Math.max(start, transactions.lowerBound(toMillis));
+            return Collections.unmodifiableList(transactions.copy(start, end));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* One page of the transactions with from <= time < to, sorted here so callers never copy the whole range */
+    public TransactionPage getTransactionPage(long fromMillis, long toMillis, TransactionPage.SortBy sortBy,
+                                              boolean descending, int offset, int limit) {
+        lock.lock();
+        try {
+            settle();
+            int start = transactions.lowerBound(fromMillis);
+            int end = Math.max(start, transactions.lowerBound(toMillis));
+            return transactions.page(start, end, sortBy, descending, offset, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Keyset paging, newest first: the transactions before beforeMillis, about limit of them */
+    public TransactionPage getTransactionsBefore(long beforeMillis, int limit) {
+        lock.lock();
+        try {
+            settle();
+            return transactions.pageBefore(beforeMillis, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* The live history as columns, for saves, which run while postings are held off */
+    TransactionLedger getLedger() {
+        lock.lock();
+        try {
+            settle();
+            return transactions;
+        } finally {
+            lock.unlock();
+        }
     }
 
     void addTransaction(Transaction t) {
-        transactions.add(t);
+        lock.lock();
+        try {
+            transactions.add(t);
+            markDirty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ----- lazy history: stored transactions are only read when first asked for ----- */
+    void deferHistory(HistoryLoader loader) {
+        lock.lock();
+        try {
+            historyLoader = loader;
+            transactions = new TransactionLedger();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isHistoryLoaded() {
+        return historyLoader == null;
+    }
+
+    // Saves hold the lock from this check until they re-point the history
+    HistoryLoader getHistoryLoader() {
+        return historyLoader;
+    }
+
+    // Transactions added since the history was deferred, without loading the stored ones
+    TransactionLedger getUnloadedTail() {
+        lock.lock();
+        try {
+            drainPendingRows();
+            return transactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Callers hold the lock
+    private void settle() {
+        loadHistory();
+        drainPendingRows();
+    }
+
+    private void drainPendingRows() {
+        for (Transaction t; (t = pendingRows.poll()) != null; ) {
+            transactions.add(t);
+        }
+    }
+
+    private void loadHistory() {
+        if (historyLoader == null) return;
+        TransactionLedger history = new TransactionLedger();
+        try {
+            historyLoader.loadInto(history);
+        } catch (IOException | IllegalArgumentException e) { // unreadable file, or a malformed row
+            System.out.println("History load warning: " + e.getMessage());
+            return;
+        }
+        // The ledger keeps time order as rows arrive; stored histories already are, so this only appends
+        history.addAll(transactions);
+        transactions = history;
+        historyLoader = null;
+    }
+
+    void restoreBalance(long balance) {
+        balanceChanged(balance - BALANCE.getAndSet(this, balance), System.currentTimeMillis());
+        markDirty();
+    }
+
+    /* Flags the owner for the next incremental save */
+    protected void markDirty() {
+        owner.markDirty();
     }
 
     @Override
     public String toString() {
-        return accountNumber + " (" + getClass().getSimpleName() + ")  Balance: " + balance;
+        return accountNumber + " (" + getClass().getSimpleName() + ")  Balance: " + Money.format(balance);
     }
 }
\ No newline at end of file
@@ -3,24 +3,56 @@ import java.util.*;
 public class Bank {
     private final String name;
     private final List<Customer> customers = new ArrayList<>();
+    private final Map<String, Customer> customersById = new HashMap<>();
+    private final Map<String, Account> accountsByNumber = new HashMap<>();
+    private final List<InterestBearing> interestBearing = new ArrayList<>(); // for month-end, in opening order
+    private final BitSet dirtyCustomers = new BitSet(); // positions of customers with unsaved changes
+    private final CustomerSearchIndex searchIndex = new CustomerSearchIndex(customers);
 
     public Bank(String name) { this.name = name; }
 
     /* ----- public clerk API ----- */
     public Customer addIndividualCustomer(String firstName, String surname, String address, String branch) {
         IndividualCustomer c = new IndividualCustomer(firstName, surname, address, branch);
-        customers.add(c);
+        register(c);
         return c;
     }
 
     public Customer addCompanyCustomer(String companyName, String address, String cellNumber, String branch) {
         CompanyCustomer c = new CompanyCustomer(companyName, address, cellNumber, branch);
-        customers.add(c);
+        register(c);
         return c;
     }
 
-    public void applyInterestToAllCustomers() {
-        customers.forEach(Customer::applyInterestToAllAccounts);
+    public InterestRun applyInterestToAllCustomers() {
+        return applyInterestToAllCustomers(System.currentTimeMillis());
+    }
+
+    /* Posts the interest accrued up to epochMillis to every interest-bearing account, in parallel */
+    InterestRun applyInterestToAllCustomers(long epochMillis) {
+        InterestRun run = newInterestRun(epochMillis);
+        run.run();
+        return run;
+    }
+
+    /* The same run, not started yet, for callers that show its progress */
+    InterestRun newInterestRun(long epochMillis) {
+        return new InterestRun(interestBearing, epochMillis);
+    }
+
+    /* ----- read snapshots for reports and views ----- */
+    private volatile BankSnapshot snapshot = BankSnapshot.EMPTY;
+
+    // The latest published snapshot; never blocks
+    public BankSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Publishes a snapshot of the current state. Postings may run meanwhile, but customers and
+    // accounts must not be added, which BankController ensures by holding its read lock
+    synchronized BankSnapshot refreshSnapshot() {
+        snapshot = snapshot.next(customers);
+        return snapshot;
     }
 
     public List<Customer> getCustomers() {
@@ -28,24 +60,61 @@ public class Bank {
     }
 
     public Customer findCustomerById(String id) {
-        return customers.stream()
-                .filter(c -> c.getCustomerId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return customersById.get(id);
+    }
+
+    /* Customers with a name, address, branch or ID word starting with each word of the query */
+    public List<Customer> searchCustomers(String query, int limit) {
+        return searchIndex.search(query, limit);
     }
 
     /* ----- persistence helpers ----- */
-    void loadData() { TextFileRepository.load(this); }
-    void saveData() { TextFileRepository.save(this); }
+    private BankRepository repository = new TextFileRepository();
+
+    void setRepository(BankRepository repository) { this.repository = repository; }
+    void loadData() { repository.load(this); }
+    void saveData() {
+        if (repository.save(this, repository.checkpointLsn())) markClean();
+    }
 
     /* ======  MISSING METHOD NOW ADDED  ====== */
     Account findAccountByNumber(String accountNumber) {
-        for (Customer c : customers) {
-            for (Account a : c.getAccounts()) {
-                if (a.getAccountNumber().equals(accountNumber))
-                    return a;
-            }
+        return accountsByNumber.get(accountNumber);
+    }
+
+    /* ----- index maintenance ----- */
+    private void register(Customer c) {
+        customers.add(c);
+        customersById.put(c.getCustomerId(), c);
+        c.attachTo(this, customers.size() - 1);
+        searchIndex.add(c);
+    }
+
+    // Called by Customer whenever one of its accounts is opened
+    void indexAccount(Account a) {
+        if (accountsByNumber.put(a.getAccountNumber(), a) == null && a instanceof InterestBearing) {
+            interestBearing.add((InterestBearing) a);
+        }
+    }
+
+    /* ----- dirty tracking; postings on different accounts report here concurrently ----- */
+    synchronized void customerChanged(Customer c) {
+        dirtyCustomers.set(c.getPosition());
+    }
+
+    synchronized boolean hasUnsavedChanges() {
+        return !dirtyCustomers.isEmpty();
+    }
+
+    // Positions of the customers changed since the last markClean
+    synchronized BitSet getDirtyCustomers() {
+        return (BitSet) dirtyCustomers.clone();
+    }
+
+    synchronized void markClean() {
+        for (int i = dirtyCustomers.nextSetBit(0); i >= 0; i = dirtyCustomers.nextSetBit(i + 1)) {
+            customers.get(i).clearDirty();
         }
-        return null;
+        dirtyCustomers.clear();
     }
 }
\ No newline at end of file
@@ -1,47 +1,605 @@
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class BankController {
+    private static final int CHECKPOINT_INTERVAL = 500; // log records between checkpoints
+
     private Bank bank;
+    private final WriteAheadLog wal = new WriteAheadLog();
+    private volatile boolean journalMode = true;
+    private final BankRepository repository;
+    private final VelocityLimiter velocityLimiter = new VelocityLimiter();
+    private final BankEventBus events = new BankEventBus();
+    private volatile InterestRun interestRun;
+    // A posting was applied but its record could not be logged; the next checkpoint has to save it
+    private volatile boolean unlogged;
+    // Views hand their mutations and saves to this thread so theirs never waits on a lock or the
+    // disk. One thread, so operations still run in the order they were asked for.
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bank-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    // Postings share the read side and also lock their account, so postings on different accounts
+    // run in parallel while those on one account are logged and applied in the same order.
+    // Lock-free accounts skip the account lock; see withdraw for how their log stays replayable.
+    // New customers and accounts, interest runs and checkpoints take the write side.
+    private final ReentrantReadWriteLock bankLock = new ReentrantReadWriteLock();
 
+    // -Dbank.storage=text|binary|embedded; the older -Dbank.snapshot=binary still works
     public BankController(String bankName) {
+        this(bankName, BankRepository.forName(
+                System.getProperty("bank.storage", System.getProperty("bank.snapshot"))));
+    }
+
+    public BankController(String bankName, BankRepository repository) {
         this.bank = new Bank(bankName);
+        this.repository = repository;
+        bank.setRepository(repository);
         loadData();
     }
 
+    /* Latest checkpoint plus a replay of the log written since */
     public void loadData() {
-        TextFileRepository.load(bank);
+        repository.recover();
+        if (repository.hasData() || repository instanceof TextFileRepository) {
+            repository.load(bank);
+            bank.markClean();
+        } else {
+            // A new backend starts as an import of the text files and stays dirty until saved
+            TextFileRepository text = new TextFileRepository();
+            text.recover();
+            text.load(bank);
+        }
+        wal.replay(repository.checkpointLsn(), this::redo);
+    }
+
+    /* Checkpoint: snapshot of everything changed since the last one, then the log is cleared.
+       False if the snapshot could not be written, in which case the log is kept */
+    public boolean saveData() {
+        return exclusive(() -> {
+            long lsn = wal.getLastLsn();
+            if (bank.hasUnsavedChanges()) {
+                if (!repository.save(bank, lsn)) return false;
+                bank.markClean();
+            }
+            wal.clear();
+            return true;
+        });
+    }
+
+    /* ----- background work ----- */
+    /* Runs operation on the worker thread; the future completes there, so callers hop back to their own thread */
+    public <T> CompletableFuture<T> inBackground(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(operation, worker);
+    }
+
+    public CompletableFuture<Void> saveDataInBackground() {
+        return inBackground(() -> {
+            saveData();
+            return null;
+        });
+    }
+
+    /* Lets queued operations finish and takes no more; for shutdown, before the last save */
+    public void shutdown() {
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("Shutdown warning: background operations still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Writes the pipe-delimited text files regardless of the snapshot format in use */
+    public boolean exportText() {
+        return exclusive(() -> {
+            saveData(); // empties the log so the export and the checkpoint cover the same LSN
+            return repository instanceof TextFileRepository
+                    || new TextFileRepository().save(bank, wal.getLastLsn());
+        });
+    }
+
+    /* FSYNC acknowledges a posting once it is on disk, IMMEDIATE as soon as it is queued */
+    public void setDurability(WriteAheadLog.Durability durability) {
+        wal.setDurability(durability);
+    }
+
+    public void setJournalMode(boolean journalMode) {
+        if (this.journalMode && !journalMode) {
+            saveData();
+        }
+        this.journalMode = journalMode;
+    }
+
+    /* ----- logging around each mutation ----- */
+    // Throws UncheckedIOException if the record is not written, which refuses the operation
+    private void log(String operation, Object... args) {
+        if (journalMode) {
+            wal.append(operation, args);
+        }
+    }
+
+    // For outcomes logged after they were applied, which can no longer be refused
+    private void logApplied(String operation, Object... args) {
+        try {
+            log(operation, args);
+        } catch (UncheckedIOException e) {
+            System.out.println("Log error: " + e.getMessage());
+            unlogged = true;
+        }
+    }
+
+    /* ----- locking ----- */
+    private <T> T posting(String accountNumber, Function<Account, T> operation) {
+        bankLock.readLock().lock();
+        try {
+            Account account = requireAccount(accountNumber);
+            if (account.isLockFree()) {
+                return operation.apply(account);
+            }
+            account.getLock().lock();
+            try {
+                return operation.apply(account);
+            } finally {
+                account.getLock().unlock();
+            }
+        } finally {
+            bankLock.readLock().unlock();
+        }
+    }
+
+    // A posting on two accounts: both account locks, taken in the global order Account.lockPair uses
+    private <T> T posting(String fromNumber, String toNumber, BiFunction<Account, Account, T> operation) {
+        bankLock.readLock().lock();
+        try {
+            Account from = requireAccount(fromNumber);
+            Account to = requireAccount(toNumber);
+            Account.lockPair(from, to);
+            try {
+                return operation.apply(from, to);
+            } finally {
+                Account.unlockPair(from, to);
+            }
+        } finally {
+            bankLock.readLock().unlock();
+        }
+    }
+
+    private <T> T exclusive(Supplier<T> operation) {
+        bankLock.writeLock().lock();
+        try {
+            return operation.get();
+        } finally {
+            bankLock.writeLock().unlock();
+        }
+    }
+
+    // Runs with no lock held, since a checkpoint needs the write side
+    private void afterMutation() {
+        boolean mustSave = unlogged;
+        if (mustSave || !journalMode || wal.getPendingRecords() >= CHECKPOINT_INTERVAL) {
+            unlogged = false;
+            if (!saveData() && mustSave) {
+                unlogged = true;
+                throw new UncheckedIOException(new IOException("A posting was applied but could neither be logged nor saved"));
+            }
+        }
+    }
+
+    /* ----- change events, published once the change is done and its locks are released ----- */
+    private void publish(BankEvent event) {
+        events.publish(event);
+    }
+
+    // A posting's rows and the balances it changed
+    private void publishPosting(Account account, TransactionType type, long cents, long epochMillis) {
+        if (!events.hasSubscribers()) return;
+        publish(new BankEvent.TransactionAppended(account, new Transaction(type, cents, epochMillis)));
+        if (type != TransactionType.BALANCE_CHECK) {
+            publish(new BankEvent.BalanceChanged(account));
+        }
+    }
+
+    /* Re-applies one logged operation during recovery */
+    private void redo(PipeRecord r) {
+        switch (r.get(1)) {
+            case "ADD_INDIVIDUAL":
+                refusedAgain(() -> bank.addIndividualCustomer(r.getText(2), r.getText(3), r.getText(4), r.getText(5)));
+                break;
+            case "ADD_COMPANY":
+                refusedAgain(() -> bank.addCompanyCustomer(r.getText(2), r.getText(3), r.getText(4), r.getText(5)));
+                break;
+            case "OPEN_ACCOUNT":
+                // customerId|type|deposit|branch|extra...|openedAt
+                String[] extra = new String[r.size() - 8];
+                for (int i = 0; i < extra.length; i++) {
+                    extra[i] = r.getText(6 + i);
+                }
+                Customer owner = Objects.requireNonNull(bank.findCustomerById(r.getText(2)), "customer not found");
+                refusedAgain(() -> openAccount(owner, r.getText(3), r.getDouble(4), r.getText(5), extra, r.getLong(r.size() - 2)));
+                break;
+            case "DEPOSIT":
+                Account credited = requireAccount(r.getText(2));
+                refusedAgain(() -> credited.owner.deposit(credited.getAccountNumber(), r.getMoney(3), loggedTime(r, 4)));
+                break;
+            case "WITHDRAW":
+                Account debited = requireAccount(r.getText(2));
+                refusedAgain(() -> debited.owner.withdraw(debited.getAccountNumber(), r.getMoney(3), loggedTime(r, 4)));
+                break;
+            case "DEBIT":
+                requireAccount(r.getText(2)).forceDebit(TransactionType.WITHDRAW, r.getMoney(3), loggedTime(r, 4));
+                break;
+            case "TRANSFER":
+                Account source = requireAccount(r.getText(2));
+                Account target = requireAccount(r.getText(3));
+                refusedAgain(() -> Account.transfer(source, target, r.getMoney(4), loggedTime(r, 5)));
+                break;
+            case "TRANSFER_APPLIED":
+                Account.forceTransfer(requireAccount(r.getText(2)), requireAccount(r.getText(3)), r.getMoney(4), r.getLong(5));
+                break;
+            case "BALANCE_CHECK":
+                requireAccount(r.getText(2)).addTransaction(new Transaction(TransactionType.BALANCE_CHECK, 0, loggedTime(r, 3)));
+                break;
+            case "INTEREST":
+                bank.applyInterestToAllCustomers(loggedTime(r, 2));
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + r.get(1));
+        }
+    }
+
+    // These operations are logged before they run. One its own rules refused then is refused the
+    // same way now and changes nothing; a missing account or customer is a real error and is not caught
+    private static void refusedAgain(Runnable operation) {
+        try {
+            operation.run();
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // refused the first time round as well
+        }
     }
 
-    public void saveData() {
-        TextFileRepository.save(bank);
+    // Records from before timestamps were logged fall back to the time of replay
+    private static long loggedTime(PipeRecord r, int field) {
+        return field < r.size() - 1 ? r.getLong(field) : System.currentTimeMillis();
     }
 
+    private Account requireAccount(String accountNumber) {
+        Account account = bank.findAccountByNumber(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found");
+        }
+        return account;
+    }
+
+    /* ----- mutations: logged first, then applied ----- */
     public Customer addIndividualCustomer(String firstName, String surname, String address, String branch) {
-        Customer customer = bank.addIndividualCustomer(firstName, surname, address, branch);
-        saveData();
+        Customer customer = exclusive(() -> {
+            log("ADD_INDIVIDUAL", firstName, surname, address, branch);
+            return bank.addIndividualCustomer(firstName, surname, address, branch);
+        });
+        publish(new BankEvent.CustomerAdded(customer));
+        afterMutation();
         return customer;
     }
 
     public Customer addCompanyCustomer(String companyName, String address, String cellNumber, String branch) {
-        Customer customer = bank.addCompanyCustomer(companyName, address, cellNumber, branch);
-        saveData();
+        Customer customer = exclusive(() -> {
+            log("ADD_COMPANY", companyName, address, cellNumber, branch);
+            return bank.addCompanyCustomer(companyName, address, cellNumber, branch);
+        });
+        publish(new BankEvent.CustomerAdded(customer));
+        afterMutation();
         return customer;
     }
 
     public void createAccount(String customerId, String accountType, double initialDeposit,
                               String branch, String... extra) {
-        Customer customer = bank.findCustomerById(customerId);
-        if (customer != null) {
-            customer.openAccount(accountType, initialDeposit, branch, extra);
-            saveData();
-        } else {
-            throw new IllegalArgumentException("Customer not found with ID: " + customerId);
+        long now = System.currentTimeMillis();
+        Account opened = exclusive(() -> {
+            Customer customer = bank.findCustomerById(customerId);
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer not found with ID: " + customerId);
+            }
+            Object[] args = new Object[5 + extra.length];
+            args[0] = customerId;
+            args[1] = accountType;
+            args[2] = initialDeposit;
+            args[3] = branch;
+            System.arraycopy(extra, 0, args, 4, extra.length);
+            args[args.length - 1] = now;
+            log("OPEN_ACCOUNT", args);
+            return openAccount(customer, accountType, initialDeposit, branch, extra, now);
+        });
+        publish(new BankEvent.AccountOpened(opened));
+        afterMutation();
+    }
+
+    // An investment account accrues from openedAt, so a replayed one does not start at the time of replay
+    private static Account openAccount(Customer customer, String type, double initialDeposit, String branch,
+                                       String[] extra, long openedAt) {
+        customer.openAccount(type, initialDeposit, branch, extra);
+        Account opened = customer.getAccounts().get(customer.getAccounts().size() - 1);
+        if (opened instanceof InvestmentAccount) {
+            ((InvestmentAccount) opened).restoreAccrual(0, InvestmentAccount.epochDay(openedAt));
+        }
+        return opened;
+    }
+
+    public void deposit(String accountNumber, double amount) {
+        long cents = Money.ofDouble(amount);
+        long now = System.currentTimeMillis();
+        Account account = posting(accountNumber, a -> {
+            log("DEPOSIT", accountNumber, Money.format(cents), now);
+            a.owner.deposit(accountNumber, cents, now);
+            return a;
+        });
+        publishPosting(account, TransactionType.DEPOSIT, cents, now);
+        afterMutation();
+    }
+
+    public boolean withdraw(String accountNumber, double amount) {
+        long cents = Money.ofDouble(amount);
+        long now = System.currentTimeMillis();
+        // The account, or null if the withdrawal was refused
+        Account account = posting(accountNumber, a -> {
+            if (a.isLockFree()) {
+                // Without the account lock, log order need not match the order the funds checks ran
+                // in, so the outcome is logged instead: a DEBIT that replay applies unconditionally
+                boolean done = a.owner.withdraw(accountNumber, cents, now);
+                if (done) logApplied("DEBIT", accountNumber, Money.format(cents), now);
+                return done ? a : null;
+            }
+            log("WITHDRAW", accountNumber, Money.format(cents), now);
+            return a.owner.withdraw(accountNumber, cents, now) ? a : null;
+        });
+        if (account != null) {
+            publishPosting(account, TransactionType.WITHDRAW, cents, now);
+        }
+        afterMutation();
+        return account != null;
+    }
+
+    /* Both postings of a transfer go in one log record, so they are recovered or lost together */
+    public boolean transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        long cents = Money.ofDouble(amount);
+        long now = System.currentTimeMillis();
+        // Both accounts, or null if the transfer was refused
+        Account[] moved = posting(fromAccountNumber, toAccountNumber, (from, to) -> {
+            boolean done;
+            if (from.isLockFree()) {
+                // As with withdraw: the debit may race lock-free postings, so log the outcome
+                done = Account.transfer(from, to, cents, now);
+                if (done) logApplied("TRANSFER_APPLIED", fromAccountNumber, toAccountNumber, Money.format(cents), now);
+            } else {
+                log("TRANSFER", fromAccountNumber, toAccountNumber, Money.format(cents), now);
+                done = Account.transfer(from, to, cents, now);
+            }
+            return done ? new Account[]{from, to} : null;
+        });
+        if (moved != null) {
+            publishPosting(moved[0], TransactionType.TRANSFER_OUT, cents, now);
+            publishPosting(moved[1], TransactionType.TRANSFER_IN, cents, now);
+        }
+        afterMutation();
+        return moved != null;
+    }
+
+    public void recordBalanceCheck(String accountNumber) {
+        long now = System.currentTimeMillis();
+        Account account = posting(accountNumber, a -> {
+            log("BALANCE_CHECK", accountNumber, now);
+            a.addTransaction(new Transaction(TransactionType.BALANCE_CHECK, 0, now));
+            return a;
+        });
+        publishPosting(account, TransactionType.BALANCE_CHECK, 0, now);
+        afterMutation();
+    }
+
+    /* The month-end run in progress, readable from any thread while it goes, or the last one; null before the first */
+    public InterestRun getInterestRun() {
+        return interestRun;
+    }
+
+    public InterestRun applyMonthlyInterest() {
+        long now = System.currentTimeMillis();
+        InterestRun run = exclusive(() -> {
+            log("INTEREST", now); // replay posts what had accrued by then, not by the time of replay
+            InterestRun started = bank.newInterestRun(now);
+            interestRun = started;
+            started.run();
+            return started;
+        });
+        if (events.hasSubscribers()) {
+            run.getAccounts().forEach(a -> publish(new BankEvent.BalanceChanged((Account) a)));
+        }
+        afterMutation();
+        return run;
+    }
+
+    /* ---------- BATCH INGESTION ---------- */
+    // Lines are accountNumber|type|amount[|epochMillis], type D or W (or the full name). The batch
+    // runs as one unit with postings held off: each account's rows are applied in file order by a
+    // single worker, accounts in parallel, and one checkpoint at the end persists the lot instead
+    // of a log record and a save per row. Only if that checkpoint fails are the rows logged.
+    public BatchReport ingestBatch(Path batchFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = PipeRecord.open(batchFile)) {
+            for (String line; (line = in.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        long now = System.currentTimeMillis();
+        BatchReport report = new BatchReport(lines.size());
+        Set<Account> touched = exclusive(() -> {
+            Set<Account> accounts = applyBatch(lines, now, report);
+            if (!saveData()) {
+                logBatch(lines, now, report);
+            }
+            return accounts;
+        });
+        touched.forEach(a -> publish(new BankEvent.BalanceChanged(a)));
+        return report;
+    }
+
+    // Returns the accounts the batch had rows for
+    private Set<Account> applyBatch(List<String> lines, long now, BatchReport report) {
+        int n = lines.size();
+        boolean[] deposit = new boolean[n];
+        long[] cents = new long[n];
+        long[] times = new long[n];
+        // Each account's rows as a chain through next[], first and last row kept per account
+        int[] next = new int[n];
+        Map<Account, int[]> chains = new LinkedHashMap<>();
+
+        PipeRecord p = new PipeRecord();
+        for (int i = 0; i < n; i++) {
+            try {
+                p.reset(lines.get(i));
+                if (p.size() < 3) throw new IllegalArgumentException("Expected account|type|amount");
+                Account account = bank.findAccountByNumber(p.get(0));
+                if (account == null) throw new IllegalArgumentException("Account not found: " + p.get(0));
+                TransactionType type = p.getTransactionType(1);
+                if (type != TransactionType.DEPOSIT && type != TransactionType.WITHDRAW) {
+                    throw new IllegalArgumentException("Only deposits and withdrawals can be batched");
+                }
+                deposit[i] = type == TransactionType.DEPOSIT;
+                cents[i] = p.getMoney(2);
+                if (cents[i] <= 0) throw new IllegalArgumentException("Amount must be > 0");
+                times[i] = p.size() > 3 ? p.getLong(3) : now;
+
+                next[i] = -1;
+                int[] chain = chains.get(account);
+                if (chain == null) {
+                    chains.put(account, new int[]{i, i});
+                } else {
+                    next[chain[1]] = i;
+                    chain[1] = i;
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                report.record(i, BatchReport.REJECTED, e.getMessage());
+            }
+        }
+
+        List<Callable<Void>> partitions = new ArrayList<>(chains.size());
+        chains.forEach((account, chain) -> partitions.add(() -> {
+            for (int i = chain[0]; i >= 0; i = next[i]) {
+                // Withdrawals count against the velocity limits as of the ingest, whatever time the row carries
+                if (!deposit[i]) {
+                    String breach = velocityLimiter.tryReserve(account, cents[i], now);
+                    if (breach != null) {
+                        report.record(i, BatchReport.REFUSED, breach);
+                        continue;
+                    }
+                }
+                boolean ok = false;
+                try {
+                    ok = deposit[i]
+                            ? credit(account, cents[i], times[i])
+                            : account.debit(TransactionType.WITHDRAW, cents[i], times[i]);
+                    if (ok) {
+                        report.record(i, BatchReport.OK, account.getAccountNumber());
+                    } else {
+                        report.record(i, BatchReport.REFUSED, "Insufficient funds or withdrawals not allowed");
+                    }
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    report.record(i, BatchReport.REFUSED, e.getMessage());
+                } finally {
+                    if (!ok && !deposit[i]) velocityLimiter.release(account, cents[i], now);
+                }
+            }
+            return null;
+        }));
+
+        ExecutorService workers = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), partitions.size())));
+        try {
+            workers.invokeAll(partitions);
+        } catch (InterruptedException e) {
+            // Rows already applied stay applied and are saved with the rest; the report shows which
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+        report.finish();
+        return chains.keySet();
+    }
+
+    // The applied rows as they came out, in file order, so replay repeats them on the last snapshot
+    // and the records logged after this one find the batch already there
+    private void logBatch(List<String> lines, long now, BatchReport report) {
+        PipeRecord p = new PipeRecord();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!BatchReport.OK.equals(report.getStatus(i))) continue;
+            p.reset(lines.get(i));
+            long time = p.size() > 3 ? p.getLong(3) : now;
+            String amount = Money.format(p.getMoney(2));
+            if (p.getTransactionType(1) == TransactionType.DEPOSIT) {
+                log("DEPOSIT", p.get(0), amount, time);
+            } else {
+                log("DEBIT", p.get(0), amount, time);
+            }
+        }
+    }
+
+    private static boolean credit(Account account, long cents, long epochMillis) {
+        account.credit(TransactionType.DEPOSIT, cents, epochMillis);
+        return true;
+    }
+
+    /* A fresh point-in-time view of all customers and balances; only waits for structural changes */
+    public BankSnapshot snapshot() {
+        bankLock.readLock().lock();
+        try {
+            return bank.refreshSnapshot();
+        } finally {
+            bankLock.readLock().unlock();
         }
     }
 
-    public void applyMonthlyInterest() {
-        bank.applyInterestToAllCustomers();
-        saveData();
+    /* Type-ahead customer search; only waits for customers being added */
+    public List<Customer> searchCustomers(String query, int limit) {
+        bankLock.readLock().lock();
+        try {
+            return bank.searchCustomers(query, limit);
+        } finally {
+            bankLock.readLock().unlock();
+        }
+    }
+
+    /* The same search as rows for a view, copied under the lock so no account list changes while it is read */
+    public List<BankSnapshot.CustomerEntry> searchCustomerEntries(String query, int limit) {
+        bankLock.readLock().lock();
+        try {
+            List<Customer> found = bank.searchCustomers(query, limit);
+            List<BankSnapshot.CustomerEntry> entries = new ArrayList<>(found.size());
+            for (Customer c : found) {
+                entries.add(new BankSnapshot.CustomerEntry(c));
+            }
+            return entries;
+        } finally {
+            bankLock.readLock().unlock();
+        }
+    }
+
+    /* One customer's row for a view, copied under the lock like a snapshot's */
+    public BankSnapshot.CustomerEntry customerEntry(Customer customer) {
+        bankLock.readLock().lock();
+        try {
+            return new BankSnapshot.CustomerEntry(customer);
+        } finally {
+            bankLock.readLock().unlock();
+        }
     }
 
     public List<Customer> getAllCustomers() {
@@ -52,7 +610,16 @@ public class BankController {
         return bank.findCustomerById(id);
     }
 
+    /* Changes made through this controller, for views to follow */
+    public BankEventBus getEvents() {
+        return events;
+    }
+
+    VelocityLimiter getVelocityLimiter() {
+        return velocityLimiter;
+    }
+
     public Bank getBank() {
         return bank;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+/**
+ * A change made through BankController, published on its BankEventBus once the change is done.
+ * Views apply these to what they show instead of reloading everything.
+ *
+ * Single postings publish a TransactionAppended for each row they add and a BalanceChanged for
+ * each account they touch. Bulk runs (month-end interest, batch ingestion) only publish the
+ * BalanceChanged events; a view showing one of those histories reloads it to see the new rows.
+ */
+public abstract class BankEvent {
+
+    public static final class CustomerAdded extends BankEvent {
+        private final Customer customer;
+
+        CustomerAdded(Customer customer) {
+            this.customer = customer;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+    }
+
+    public static final class AccountOpened extends BankEvent {
+        private final Account account;
+
+        AccountOpened(Account account) {
+            this.account = account;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        public Customer getOwner() {
+            return account.owner;
+        }
+    }
+
+    public static final class BalanceChanged extends BankEvent {
+        private final Account account;
+        private final long balanceCents;
+
+        BalanceChanged(Account account) {
+            this.account = account;
+            this.balanceCents = account.getBalanceCents();
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        /* The balance just after the change */
+        public long getBalanceCents() {
+            return balanceCents;
+        }
+    }
+
+    public static final class TransactionAppended extends BankEvent {
+        private final Account account;
+        private final Transaction transaction;
+
+        TransactionAppended(Account account, Transaction transaction) {
+            this.account = account;
+            this.transaction = transaction;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        public Transaction getTransaction() {
+            return transaction;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers BankEvents to subscribers on the thread that made the change, after its locks are
+ * released. Subscribers that touch the UI hand the event over to the FX thread themselves.
+ */
+public class BankEventBus {
+    // Subscribing is rare and publishing constant, so publishing iterates without locking
+    private final List<Consumer<BankEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Consumer<BankEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<BankEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    void publish(BankEvent event) {
+        for (Consumer<BankEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) { // a failing view must not fail the posting
+                System.out.println("Event warning: " + e.getMessage());
+            }
+        }
+    }
+
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Storage backend for the bank.
+ * BankController picks one at start-up with -Dbank.storage=text|binary|embedded (text by default),
+ * loads from it and hands it every checkpoint.
+ */
+interface BankRepository {
+
+    /* True once this backend holds a saved bank; until then the text files are imported */
+    boolean hasData();
+
+    void load(Bank bank);
+
+    /* Persists the bank as one atomic snapshot covering the write-ahead log up to lsn */
+    boolean save(Bank bank, long lsn);
+
+    /* Log sequence number covered by the last committed save */
+    long checkpointLsn();
+
+    /* Finishes a save that was interrupted after its commit point; called before anything is read */
+    default void recover() {
+    }
+
+    static BankRepository forName(String name) {
+        if (name == null) return new TextFileRepository();
+        switch (name.toLowerCase()) {
+            case "binary":
+                return new BinarySnapshotRepository();
+            case "embedded":
+                return new EmbeddedStoreRepository();
+            case "text":
+                return new TextFileRepository();
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + name);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.*;
+
+/**
+ * An immutable, point-in-time copy of the bank's customers and account balances for reports
+ * and dashboards. Readers hold on to one and never lock or see it change.
+ *
+ * Customers are kept in fixed-size chunks. Each new version is built from the previous one and
+ * reuses every chunk whose customers have not changed, so a refresh after a few postings
+ * allocates a few chunks rather than copying the whole bank. Versions count up from 0; an
+ * unchanged bank yields the same snapshot, version and all.
+ */
+public final class BankSnapshot {
+    private static final int CHUNK_SIZE = 64;
+    static final BankSnapshot EMPTY = new BankSnapshot(0, new CustomerEntry[0][], 0);
+
+    private final long version;
+    private final CustomerEntry[][] chunks;
+    private final int size;
+
+    private BankSnapshot(long version, CustomerEntry[][] chunks, int size) {
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CustomerEntry get(int index) {
+        Objects.checkIndex(index, size);
+        return chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+    }
+
+    /* The customers as a read-only list, in bank order */
+    public List<CustomerEntry> customers() {
+        return new AbstractList<CustomerEntry>() {
+            @Override
+            public CustomerEntry get(int index) {
+                return BankSnapshot.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /* Next version from the live customer list; the caller keeps the list's structure still meanwhile */
+    BankSnapshot next(List<Customer> live) {
+        int n = live.size();
+        CustomerEntry[][] nextChunks = new CustomerEntry[(n + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        boolean changed = n != size;
+        for (int c = 0; c < nextChunks.length; c++) {
+            int from = c * CHUNK_SIZE;
+            int length = Math.min(CHUNK_SIZE, n - from);
+            CustomerEntry[] old = c < chunks.length ? chunks[c] : null;
+            // A full chunk is copied on its first change only; a new or growing one is always a copy
+            CustomerEntry[] chunk = old == null ? new CustomerEntry[length]
+                    : old.length == length ? old : Arrays.copyOf(old, length);
+            for (int i = 0; i < length; i++) {
+                CustomerEntry previous = old != null && i < old.length ? old[i] : null;
+                Customer customer = live.get(from + i);
+                if (previous != null && previous.matches(customer)) continue;
+                if (chunk == old) chunk = Arrays.copyOf(old, length);
+                chunk[i] = new CustomerEntry(customer);
+            }
+            changed |= chunk != old;
+            nextChunks[c] = chunk;
+        }
+        return changed ? new BankSnapshot(version + 1, nextChunks, n) : this;
+    }
+
+    /* ---------- ENTRIES ---------- */
+    public static final class CustomerEntry {
+        private final String customerId;
+        private final String type;
+        private final String name;
+        private final String address;
+        private final String branch;
+        private final List<AccountEntry> accounts;
+
+        CustomerEntry(Customer c) {
+            this.customerId = c.getCustomerId();
+            this.type = c.getClass().getSimpleName().replace("Customer", "");
+            // For company customers, surname holds the company name
+            this.name = c.firstName != null ? c.firstName + " " + c.surname : c.surname;
+            this.address = c.address;
+            if (c instanceof IndividualCustomer) {
+                this.branch = ((IndividualCustomer) c).getBranch();
+            } else if (c instanceof CompanyCustomer) {
+                this.branch = ((CompanyCustomer) c).getBranch();
+            } else {
+                this.branch = "Unknown";
+            }
+            AccountEntry[] entries = new AccountEntry[c.getAccounts().size()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = new AccountEntry(c.getAccounts().get(i));
+            }
+            this.accounts = List.of(entries);
+        }
+
+        // Names never change after creation, so only the accounts and their balances are compared
+        boolean matches(Customer c) {
+            List<Account> live = c.getAccounts();
+            if (live.size() != accounts.size()) return false;
+            for (int i = 0; i < accounts.size(); i++) {
+                if (live.get(i).getBalanceCents() != accounts.get(i).balanceCents) return false;
+            }
+            return true;
+        }
+
+        public String getCustomerId() {
+            return customerId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public String getBranch() {
+            return branch;
+        }
+
+        public List<AccountEntry> getAccounts() {
+            return accounts;
+        }
+    }
+
+    public static final class AccountEntry {
+        private final String accountNumber;
+        private final String type;
+        private final long balanceCents;
+        private final String branch;
+
+        AccountEntry(Account a) {
+            this.accountNumber = a.getAccountNumber();
+            this.type = a.getClass().getSimpleName().replace("Account", "");
+            this.balanceCents = a.getBalanceCents();
+            this.branch = a.branch;
+        }
+
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+
+        /* Savings, Investment or Cheque */
+        public String getType() {
+            return type;
+        }
+
+        public long getBalanceCents() {
+            return balanceCents;
+        }
+
+        public double getBalance() {
+            return Money.toDouble(balanceCents);
+        }
+
+        public String getBranch() {
+            return branch;
+        }
+    }
+}
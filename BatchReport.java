@@ -0,0 +1,75 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Outcome of one batch ingestion, one entry per line of the batch file.
+ * Written as pipe-delimited text: lineNumber|status|detail, where status is OK, REFUSED, REJECTED
+ * or NOT_RUN.
+ */
+public class BatchReport {
+    static final String OK       = "OK";
+    static final String REFUSED  = "REFUSED";   // well-formed, but the account's rules declined it
+    static final String REJECTED = "REJECTED";  // malformed, or for an unknown account
+    static final String NOT_RUN  = "NOT_RUN";   // the batch was stopped before reaching it
+
+    private final String[] status;
+    private final String[] detail;
+    private int applied;
+
+    BatchReport(int lines) {
+        status = new String[lines];
+        detail = new String[lines];
+        Arrays.fill(status, NOT_RUN);
+        Arrays.fill(detail, "");
+    }
+
+    // Each line is only ever written by the one worker that owns its account
+    void record(int line, String status, String detail) {
+        this.status[line] = status;
+        this.detail[line] = detail;
+    }
+
+    // Called once the workers are done
+    void finish() {
+        applied = 0;
+        for (String s : status) {
+            if (OK.equals(s)) applied++;
+        }
+    }
+
+    public int getLineCount() {
+        return status.length;
+    }
+
+    public int getAppliedCount() {
+        return applied;
+    }
+
+    public int getFailedCount() {
+        return status.length - applied;
+    }
+
+    public String getStatus(int line) {
+        return status[line];
+    }
+
+    public String getDetail(int line) {
+        return detail[line];
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16))) {
+            for (int i = 0; i < status.length; i++) {
+                out.println((i + 1) + "|" + status[i] + "|" + detail[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return status.length + " lines: " + applied + " applied, " + getFailedCount() + " not applied";
+    }
+}
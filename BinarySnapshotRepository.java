@@ -0,0 +1,228 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot of the whole bank, kept alongside the pipe-delimited text files.
+ *
+ * The snapshot is split into segment files of SEGMENT_SIZE customers each, in bank order:
+ * snapshot/segment-00000.bin, snapshot/segment-00001.bin, ...
+ * Segment layout: MAGIC | VERSION | segmentIndex | customerCount | customer records...
+ * Each customer record is length-prefixed and holds the customer fields followed by its
+ * accounts, and each account is followed by its transactions. Balances and amounts are
+ * written as 8 byte counts of cents and timestamps as 8 byte epoch millis, so nothing has
+ * to be formatted or parsed as text.
+ *
+ * A save only rewrites the segments holding customers the bank reports as dirty, and commits
+ * them together through SnapshotCommit.
+ */
+public class BinarySnapshotRepository implements BankRepository {
+    private static final String SNAPSHOT_DIR = "snapshot";
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int MAGIC = 0x424E4B53; // "BNKS"
+    private static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte INDIVIDUAL = 1;
+    private static final byte COMPANY    = 2;
+
+    private static final byte SAVINGS    = 1;
+    private static final byte INVESTMENT = 2;
+    private static final byte CHEQUE     = 3;
+
+    @Override
+    public boolean hasData() {
+        return Files.exists(segmentPath(0));
+    }
+
+    @Override
+    public void recover() {
+        new SnapshotCommit(Paths.get("")).recover(); // may be a save from before the markers moved
+        new SnapshotCommit(Paths.get(SNAPSHOT_DIR)).recover();
+    }
+
+    @Override
+    public long checkpointLsn() {
+        SnapshotCommit markers = new SnapshotCommit(Paths.get(SNAPSHOT_DIR));
+        // Snapshots saved before the markers moved into the snapshot directory used the shared one
+        return markers.hasCheckpoint() || !hasData() ? markers.checkpointLsn() : new SnapshotCommit(Paths.get("")).checkpointLsn();
+    }
+
+    private static Path segmentPath(int segment) {
+        return Paths.get(SNAPSHOT_DIR, String.format("segment-%05d.bin", segment));
+    }
+
+    /* ---------- LOAD ---------- */
+    @Override
+    public void load(Bank bank) {
+        try {
+            // Segments are read in order so customers come back in their original sequence
+            for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+                if (!loadSegment(bank, segment)) return;
+            }
+        } catch (IOException e) {
+            System.out.println("Load warning: " + e.getMessage());
+        }
+    }
+
+    private static boolean loadSegment(Bank bank, int segment) throws IOException {
+        Path path = segmentPath(segment);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                System.out.println("Load warning: " + path + " is not a bank snapshot");
+                return false;
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                System.out.println("Load warning: unsupported snapshot version " + version);
+                return false;
+            }
+            if (in.readInt() != segment) {
+                System.out.println("Load warning: " + path + " holds the wrong segment");
+                return false;
+            }
+
+            int customerCount = in.readInt();
+            for (int i = 0; i < customerCount; i++) {
+                in.readInt(); // record length, only needed by readers that skip records
+                readCustomer(in, bank);
+            }
+        }
+        return true;
+    }
+
+    private static void readCustomer(DataInputStream in, Bank bank) throws IOException {
+        byte kind = in.readByte();
+        String a = in.readUTF(), b = in.readUTF(), c = in.readUTF(), branch = in.readUTF();
+        Customer owner = kind == COMPANY
+                ? bank.addCompanyCustomer(a, b, c, branch)
+                : bank.addIndividualCustomer(a, b, c, branch);
+
+        int accountCount = in.readInt();
+        for (int i = 0; i < accountCount; i++) {
+            byte type = in.readByte();
+            double bal = Money.toDouble(in.readLong());
+            String accBranch = in.readUTF();
+            switch (type) {
+                case SAVINGS:
+                    owner.openAccount("savings", Math.max(bal, 1000.0), accBranch);
+                    break;
+                case INVESTMENT:
+                    owner.openAccount("investment", bal, accBranch);
+                    List<Account> opened = owner.getAccounts();
+                    ((InvestmentAccount) opened.get(opened.size() - 1)).restoreAccrual(in.readLong(), in.readLong());
+                    break;
+                case CHEQUE:
+                    owner.openAccount("cheque", bal, accBranch, in.readUTF(), in.readUTF());
+                    break;
+                default:
+                    throw new IOException("Unknown account type code " + type);
+            }
+
+            TransactionLedger ledger = owner.getAccounts().get(owner.getAccounts().size() - 1).getLedger();
+            int txnCount = in.readInt();
+            for (int t = 0; t < txnCount; t++) {
+                TransactionType txnType = TransactionType.fromCode((char) in.readByte());
+                long amount = in.readLong();
+                ledger.add(txnType, amount, in.readLong());
+            }
+        }
+    }
+
+    /* ---------- SAVE ---------- */
+    /* Rewrites the dirty segments as one atomic snapshot covering the log up to lsn */
+    @Override
+    public boolean save(Bank bank, long lsn) {
+        List<Customer> customers = bank.getCustomers();
+        BitSet dirty = bank.getDirtyCustomers();
+        SnapshotCommit commit = new SnapshotCommit(Paths.get(SNAPSHOT_DIR));
+
+        try {
+            Files.createDirectories(Paths.get(SNAPSHOT_DIR)); // also holds the checkpoint markers
+            // Walk the dirty positions only, jumping to the next segment once one is written
+            for (int i = dirty.nextSetBit(0); i >= 0; ) {
+                int segment = i / SEGMENT_SIZE;
+                int from = segment * SEGMENT_SIZE;
+                int to = Math.min(from + SEGMENT_SIZE, customers.size());
+                writeSegment(commit.stage(segmentPath(segment)), segment, customers.subList(from, to));
+                i = to < customers.size() ? dirty.nextSetBit(to) : -1;
+            }
+            commit.commit(lsn);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Save error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeSegment(Path tmp, int segment, List<Customer> customers) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(segment);
+            out.writeInt(customers.size());
+
+            // Each customer is encoded into a reusable buffer first so it can be length-prefixed
+            ByteArrayOutputStream record = new ByteArrayOutputStream(4096);
+            DataOutputStream rec = new DataOutputStream(record);
+            for (Customer c : customers) {
+                record.reset();
+                writeCustomer(rec, c);
+                rec.flush();
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+        }
+    }
+
+    private static void writeCustomer(DataOutputStream out, Customer c) throws IOException {
+        if (c instanceof CompanyCustomer) {
+            CompanyCustomer cc = (CompanyCustomer) c;
+            out.writeByte(COMPANY);
+            out.writeUTF(cc.companyName);
+            out.writeUTF(cc.address);
+            out.writeUTF(cc.cellNumber);
+            out.writeUTF(cc.getBranch());
+        } else {
+            IndividualCustomer ic = (IndividualCustomer) c;
+            out.writeByte(INDIVIDUAL);
+            out.writeUTF(ic.firstName);
+            out.writeUTF(ic.surname);
+            out.writeUTF(ic.address);
+            out.writeUTF(ic.getBranch());
+        }
+
+        out.writeInt(c.getAccounts().size());
+        for (Account a : c.getAccounts()) {
+            if (a instanceof SavingsAccount) {
+                out.writeByte(SAVINGS);
+            } else if (a instanceof InvestmentAccount) {
+                out.writeByte(INVESTMENT);
+            } else {
+                out.writeByte(CHEQUE);
+            }
+            out.writeLong(a.getBalanceCents());
+            out.writeUTF(a.branch);
+            if (a instanceof ChequeAccount) {
+                ChequeAccount ch = (ChequeAccount) a;
+                out.writeUTF(ch.getEmployer());
+                out.writeUTF(ch.getCompanyAddress());
+            } else if (a instanceof InvestmentAccount) {
+                long today = InvestmentAccount.epochDay(System.currentTimeMillis());
+                out.writeLong(((InvestmentAccount) a).getAccruedCentDays(today));
+                out.writeLong(today);
+            }
+
+            TransactionLedger ledger = a.getLedger();
+            out.writeInt(ledger.size());
+            for (int t = 0; t < ledger.size(); t++) {
+                out.writeByte(ledger.typeAt(t).getCode());
+                out.writeLong(ledger.amountAt(t));
+                out.writeLong(ledger.timeAt(t));
+            }
+        }
+    }
+}
@@ -2,7 +2,7 @@ public class ChequeAccount extends Account {
     private String employer;
     private String companyAddress;
 
-    public ChequeAccount(String accountNumber, double balance, String branch,
+    public ChequeAccount(String accountNumber, long balance, String branch,
                          Customer owner, String employer, String companyAddress) {
         super(accountNumber, balance, branch, owner);
         this.employer = employer;
@@ -10,10 +10,9 @@ public class ChequeAccount extends Account {
     }
 
     @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0) return false;
-        balance -= amount;
-        return true;
+    protected long afterWithdrawal(long current, long cents) {
+        if (cents <= 0) return REFUSED;
+        return Math.subtractExact(current, cents);
     }
 
     public String getEmployer() {
@@ -1,6 +1,8 @@
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ClerkController {
+    private static final int SEARCH_LIMIT = 200; // more than a clerk reads; keep typing to narrow
     private BankController bankController;
 
     public ClerkController(BankController bankController) {
@@ -59,13 +61,59 @@ public class ClerkController {
 
     public String applyMonthlyInterest() {
         try {
-            bankController.applyMonthlyInterest();
-            return "Monthly interest applied to all eligible accounts!";
+            InterestRun run = bankController.applyMonthlyInterest();
+            return "Monthly interest applied to all eligible accounts! (" + run + ")";
         } catch (Exception e) {
             return "Error applying interest: " + e.getMessage();
         }
     }
 
+    /* ----- the same operations on the bank's worker thread, for views ----- */
+    public CompletableFuture<String> addIndividualCustomerAsync(String firstName, String surname, String address, String branch) {
+        return bankController.inBackground(() -> addIndividualCustomer(firstName, surname, address, branch));
+    }
+
+    public CompletableFuture<String> addCompanyCustomerAsync(String companyName, String address, String cellNumber, String branch) {
+        return bankController.inBackground(() -> addCompanyCustomer(companyName, address, cellNumber, branch));
+    }
+
+    public CompletableFuture<String> createAccountAsync(String customerId, String accountType, double initialDeposit,
+                                                       String branch, String employer, String companyAddress) {
+        return bankController.inBackground(() -> createAccount(customerId, accountType, initialDeposit, branch, employer, companyAddress));
+    }
+
+    public CompletableFuture<String> applyMonthlyInterestAsync() {
+        return bankController.inBackground(this::applyMonthlyInterest);
+    }
+
+    // Building a snapshot of a large bank takes a while, so the table asks for it this way
+    public CompletableFuture<BankSnapshot> getSnapshotAsync() {
+        return bankController.inBackground(this::getSnapshot);
+    }
+
+    /* Point-in-time view for the customers table; reading it never holds up postings */
+    public BankSnapshot getSnapshot() {
+        return bankController.snapshot();
+    }
+
+    public List<Customer> searchCustomers(String query) {
+        return bankController.searchCustomers(query, SEARCH_LIMIT);
+    }
+
+    /* Search results as table rows, copied from the customers under the bank's lock */
+    public List<BankSnapshot.CustomerEntry> searchCustomerEntries(String query) {
+        return bankController.searchCustomerEntries(query, SEARCH_LIMIT);
+    }
+
+    // Searches wait on the bank's lock for customers being added, so the search box asks this way
+    public CompletableFuture<List<BankSnapshot.CustomerEntry>> searchCustomersAsync(String query) {
+        return bankController.inBackground(() -> searchCustomerEntries(query));
+    }
+
+    public BankSnapshot.CustomerEntry customerEntry(Customer customer) {
+        return bankController.customerEntry(customer);
+    }
+
     public List<Customer> getAllCustomers() {
         return bankController.getAllCustomers();
     }
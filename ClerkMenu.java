@@ -1,3 +1,4 @@
+import java.util.List;
 import java.util.Scanner;
 
 public class ClerkMenu {
@@ -17,6 +18,7 @@ public class ClerkMenu {
             System.out.println("3. Create account for customer");
             System.out.println("4. Apply monthly interest (all accounts)");
             System.out.println("5. View all customers");
+            System.out.println("6. Search customers");
             System.out.println("0. Log out");
             System.out.print("Select: ");
             String choice = sc.nextLine().trim();
@@ -29,6 +31,7 @@ public class ClerkMenu {
                     System.out.println("Monthly interest applied.");
                 }
                 case "5" -> viewAllCustomers();
+                case "6" -> searchCustomers();
                 case "0" -> { return; }
                 default -> System.out.println("Invalid choice.");
             }
@@ -100,12 +103,26 @@ public class ClerkMenu {
     }
 
     private void viewAllCustomers() {
-        bank.getCustomers().forEach(c -> {
-            System.out.println(c);
-            c.getAccounts().forEach(a -> {
-                String accountType = a.getClass().getSimpleName().replace("Account", "");
-                System.out.println("  --> " + a.getAccountNumber() + " (" + accountType + ") - Balance: $" + a.getBalance() + " - Branch: " + a.branch);
-            });
+        bank.getCustomers().forEach(this::printCustomer);
+    }
+
+    private void searchCustomers() {
+        System.out.print("Search (name, address, branch or ID): ");
+        String query = sc.nextLine().trim();
+        List<Customer> found = bank.searchCustomers(query, 50);
+        if (found.isEmpty()) {
+            System.out.println("No matching customers.");
+            return;
+        }
+        found.forEach(this::printCustomer);
+        if (found.size() == 50) System.out.println("(first 50 matches; refine the search to see others)");
+    }
+
+    private void printCustomer(Customer c) {
+        System.out.println(c);
+        c.getAccounts().forEach(a -> {
+            String accountType = a.getClass().getSimpleName().replace("Account", "");
+            System.out.println("  --> " + a.getAccountNumber() + " (" + accountType + ") - Balance: $" + a.getBalance() + " - Branch: " + a.branch);
         });
     }
 }
\ No newline at end of file
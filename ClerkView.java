@@ -1,3 +1,4 @@
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -7,14 +8,20 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class ClerkView {
     private ClerkController controller;
     private String clerkName;
     private Stage primaryStage;
     private BorderPane view;
-    private TableView<Customer> customersTable;
-    private ObservableList<Customer> customerData;
+    private TableView<BankSnapshot.CustomerEntry> customersTable;
+    private ObservableList<BankSnapshot.CustomerEntry> customerData;
+    private TextField searchField;
+    private final ProgressIndicator busyIndicator = new ProgressIndicator();
+    private int operationsRunning;
 
     public ClerkView(ClerkController controller, String clerkName, Stage primaryStage) {
         this.controller = controller;
@@ -22,6 +29,62 @@ public class ClerkView {
         this.primaryStage = primaryStage;
         createView();
         refreshCustomersTable();
+        controller.getBankController().getEvents().subscribe(bankEvents);
+    }
+
+    /* ----- change events: new customers are appended and changed ones redrawn, not reloaded ----- */
+    // The row is copied on the thread that made the change, under the bank's lock; the FX thread
+    // only ever sees the copy
+    private final Consumer<BankEvent> bankEvents = event -> {
+        Customer customer;
+        if (event instanceof BankEvent.CustomerAdded) {
+            customer = ((BankEvent.CustomerAdded) event).getCustomer();
+        } else if (event instanceof BankEvent.AccountOpened) {
+            customer = ((BankEvent.AccountOpened) event).getOwner();
+        } else {
+            return;
+        }
+        boolean added = event instanceof BankEvent.CustomerAdded;
+        int position = customer.getPosition();
+        BankSnapshot.CustomerEntry entry = controller.customerEntry(customer);
+        if (Platform.isFxApplicationThread()) {
+            applyEvent(added, position, entry);
+        } else {
+            Platform.runLater(() -> applyEvent(added, position, entry));
+        }
+    };
+
+    // The table lists every customer in bank order, so a customer's row is its position;
+    // search results are only some customers, so the search is run again instead
+    private void applyEvent(boolean added, int position, BankSnapshot.CustomerEntry entry) {
+        if (isSearching()) {
+            showSearchResults();
+        } else if (added) {
+            if (position == customerData.size()) {
+                customerData.add(entry);
+            }
+        } else if (position < customerData.size()) {
+            customerData.set(position, entry);
+        }
+    }
+
+    /* ----- background work: anything that saves runs on the bank's worker thread ----- */
+    // Disables the button, if any, and shows the busy indicator until the work is done, then hands
+    // the result to onDone back on the FX thread
+    private <T> void whenDone(Button button, CompletableFuture<T> work, Consumer<T> onDone) {
+        operationsRunning++;
+        busyIndicator.setVisible(true);
+        if (button != null) button.setDisable(true);
+        work.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (--operationsRunning == 0) busyIndicator.setVisible(false);
+            if (button != null) button.setDisable(false);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                showAlert("Error", "Operation failed: " + cause.getMessage());
+            } else {
+                onDone.accept(result);
+            }
+        }));
     }
 
     private void createView() {
@@ -68,8 +131,11 @@ public class ClerkView {
         logoutButton.getStyleClass().add("logout-button");
         logoutButton.setOnAction(e -> logout());
 
+        busyIndicator.setPrefSize(28, 28);
+        busyIndicator.setVisible(false);
+
         HBox.setHgrow(welcomeLabel, Priority.ALWAYS);
-        header.getChildren().addAll(welcomeLabel, logoutButton);
+        header.getChildren().addAll(welcomeLabel, busyIndicator, logoutButton);
 
         return header;
     }
@@ -94,7 +160,13 @@ public class ClerkView {
         refreshBtn.getStyleClass().add("secondary-button");
         refreshBtn.setOnAction(e -> refreshCustomersTable());
 
-        buttonsBox.getChildren().addAll(addIndividualBtn, addCompanyBtn, refreshBtn);
+        // Type-ahead search over names, addresses, branches and IDs; clearing it lists everyone again
+        searchField = new TextField();
+        searchField.setPromptText("Search customers...");
+        searchField.setPrefWidth(250);
+        searchField.textProperty().addListener((obs, oldText, newText) -> refreshCustomersTable());
+
+        buttonsBox.getChildren().addAll(addIndividualBtn, addCompanyBtn, refreshBtn, searchField);
 
         // Customers Table
         customersTable = new TableView<>();
@@ -108,45 +180,31 @@ public class ClerkView {
 
     @SuppressWarnings("unchecked")
     private void setupCustomersTable() {
-        TableColumn<Customer, String> idCol = new TableColumn<>("Customer ID");
+        // Rows are snapshot entries, so the table never reads customers while postings change them
+        TableColumn<BankSnapshot.CustomerEntry, String> idCol = new TableColumn<>("Customer ID");
         idCol.setCellValueFactory(new PropertyValueFactory<>("customerId"));
         idCol.setPrefWidth(120);
 
-        TableColumn<Customer, String> typeCol = new TableColumn<>("Type");
-        typeCol.setCellValueFactory(cellData ->
-                new javafx.beans.property.SimpleStringProperty(
-                        cellData.getValue().getClass().getSimpleName().replace("Customer", "")
-                ));
+        TableColumn<BankSnapshot.CustomerEntry, String> typeCol = new TableColumn<>("Type");
+        typeCol.setCellValueFactory(new PropertyValueFactory<>("type"));
         typeCol.setPrefWidth(80);
 
-        TableColumn<Customer, String> nameCol = new TableColumn<>("Name");
-        nameCol.setCellValueFactory(cellData ->
-                new javafx.beans.property.SimpleStringProperty(
-                        getCustomerDisplayName(cellData.getValue())
-                ));
+        TableColumn<BankSnapshot.CustomerEntry, String> nameCol = new TableColumn<>("Name");
+        nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
         nameCol.setPrefWidth(150);
 
-        TableColumn<Customer, String> addressCol = new TableColumn<>("Address");
+        TableColumn<BankSnapshot.CustomerEntry, String> addressCol = new TableColumn<>("Address");
         addressCol.setCellValueFactory(cellData ->
                 new javafx.beans.property.SimpleStringProperty(
-                        getCustomerAddress(cellData.getValue())
+                        cellData.getValue().getAddress() != null ? cellData.getValue().getAddress() : "No address"
                 ));
         addressCol.setPrefWidth(200);
 
-        TableColumn<Customer, String> branchCol = new TableColumn<>("Branch");
-        branchCol.setCellValueFactory(cellData -> {
-            Customer customer = cellData.getValue();
-            String branch = "Unknown";
-            if (customer instanceof IndividualCustomer) {
-                branch = ((IndividualCustomer) customer).getBranch();
-            } else if (customer instanceof CompanyCustomer) {
-                branch = ((CompanyCustomer) customer).getBranch();
-            }
-            return new javafx.beans.property.SimpleStringProperty(branch);
-        });
+        TableColumn<BankSnapshot.CustomerEntry, String> branchCol = new TableColumn<>("Branch");
+        branchCol.setCellValueFactory(new PropertyValueFactory<>("branch"));
         branchCol.setPrefWidth(120);
 
-        TableColumn<Customer, String> accountsCol = new TableColumn<>("Account Types");
+        TableColumn<BankSnapshot.CustomerEntry, String> accountsCol = new TableColumn<>("Account Types");
         accountsCol.setCellValueFactory(cellData ->
                 new javafx.beans.property.SimpleStringProperty(
                         getAccountTypes(cellData.getValue())
@@ -171,23 +229,15 @@ public class ClerkView {
         return customer.address != null ? customer.address : "No address";
     }
 
-    private String getAccountTypes(Customer customer) {
+    private String getAccountTypes(BankSnapshot.CustomerEntry customer) {
         if (customer.getAccounts().isEmpty()) {
             return "No accounts";
         }
 
         StringBuilder types = new StringBuilder();
-        for (Account account : customer.getAccounts()) {
-            if (account instanceof SavingsAccount) {
-                if (types.length() > 0) types.append(", ");
-                types.append("Savings");
-            } else if (account instanceof InvestmentAccount) {
-                if (types.length() > 0) types.append(", ");
-                types.append("Investment");
-            } else if (account instanceof ChequeAccount) {
-                if (types.length() > 0) types.append(", ");
-                types.append("Cheque");
-            }
+        for (BankSnapshot.AccountEntry account : customer.getAccounts()) {
+            if (types.length() > 0) types.append(", ");
+            types.append(account.getType());
         }
         return types.toString();
     }
@@ -332,23 +382,24 @@ public class ClerkView {
                 String employer = employerField.getText().trim();
                 String companyAddress = companyAddressField.getText().trim();
 
-                String result = controller.createAccount(
+                CompletableFuture<String> work = controller.createAccountAsync(
                         customerId, accountType, initialDeposit, branch, employer, companyAddress
                 );
 
-                showAlert("Create Account", result);
-
-                if (result.contains("successfully")) {
-                    // Clear form
-                    customerIdField.clear();
-                    depositField.clear();
-                    branchField.clear();
-                    employerField.clear();
-                    companyAddressField.clear();
-                    customerInfoLabel.setText("");
-                    depositWarningLabel.setText("");
-                    refreshCustomersTable();
-                }
+                whenDone(createAccountBtn, work, result -> {
+                    showAlert("Create Account", result);
+
+                    if (result.contains("successfully")) {
+                        // Clear form
+                        customerIdField.clear();
+                        depositField.clear();
+                        branchField.clear();
+                        employerField.clear();
+                        companyAddressField.clear();
+                        customerInfoLabel.setText("");
+                        depositWarningLabel.setText("");
+                    }
+                });
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Please enter a valid deposit amount");
             }
@@ -372,17 +423,15 @@ public class ClerkView {
         applyInterestBtn.getStyleClass().add("warning-button");
         applyInterestBtn.setStyle("-fx-font-size: 16px; -fx-padding: 15 30;");
 
-        applyInterestBtn.setOnAction(e -> {
-            String result = controller.applyMonthlyInterest();
-            showAlert("Monthly Interest", result);
-        });
+        applyInterestBtn.setOnAction(e -> whenDone(applyInterestBtn, controller.applyMonthlyInterestAsync(),
+                result -> showAlert("Monthly Interest", result)));
 
         tabContent.getChildren().addAll(titleLabel, applyInterestBtn);
         return tabContent;
     }
 
     private void showAddIndividualDialog() {
-        Dialog<String> dialog = new Dialog<>();
+        Dialog<ButtonType> dialog = new Dialog<>();
         dialog.setTitle("Add Individual Customer");
         dialog.setHeaderText("Enter individual customer details");
 
@@ -414,28 +463,19 @@ public class ClerkView {
 
         dialog.getDialogPane().setContent(grid);
 
-        dialog.setResultConverter(dialogButton -> {
-            if (dialogButton == createButtonType) {
-                return controller.addIndividualCustomer(
-                        firstNameField.getText().trim(),
-                        surnameField.getText().trim(),
-                        addressField.getText().trim(),
-                        branchField.getText().trim()
-                );
-            }
-            return null;
-        });
-
-        dialog.showAndWait().ifPresent(result -> {
-            showAlert("Add Customer", result);
-            if (result.contains("successfully")) {
-                refreshCustomersTable();
-            }
+        dialog.showAndWait().filter(button -> button == createButtonType).ifPresent(button -> {
+            CompletableFuture<String> work = controller.addIndividualCustomerAsync(
+                    firstNameField.getText().trim(),
+                    surnameField.getText().trim(),
+                    addressField.getText().trim(),
+                    branchField.getText().trim()
+            );
+            whenDone(null, work, result -> showAlert("Add Customer", result));
         });
     }
 
     private void showAddCompanyDialog() {
-        Dialog<String> dialog = new Dialog<>();
+        Dialog<ButtonType> dialog = new Dialog<>();
         dialog.setTitle("Add Company Customer");
         dialog.setHeaderText("Enter company customer details");
 
@@ -467,39 +507,40 @@ public class ClerkView {
 
         dialog.getDialogPane().setContent(grid);
 
-        dialog.setResultConverter(dialogButton -> {
-            if (dialogButton == createButtonType) {
-                return controller.addCompanyCustomer(
-                        companyNameField.getText().trim(),
-                        addressField.getText().trim(),
-                        cellNumberField.getText().trim(),
-                        branchField.getText().trim()
-                );
-            }
-            return null;
+        dialog.showAndWait().filter(button -> button == createButtonType).ifPresent(button -> {
+            CompletableFuture<String> work = controller.addCompanyCustomerAsync(
+                    companyNameField.getText().trim(),
+                    addressField.getText().trim(),
+                    cellNumberField.getText().trim(),
+                    branchField.getText().trim()
+            );
+            whenDone(null, work, result -> showAlert("Add Customer", result));
         });
+    }
 
-        dialog.showAndWait().ifPresent(result -> {
-            showAlert("Add Customer", result);
-            if (result.contains("successfully")) {
-                refreshCustomersTable();
+    private boolean isSearching() {
+        return searchField != null && !searchField.getText().isBlank();
+    }
+
+    private void showSearchResults() {
+        String query = searchField.getText();
+        whenDone(null, controller.searchCustomersAsync(query), entries -> {
+            // Each keystroke runs a search; only the one for what the box holds now is shown
+            if (query.equals(searchField.getText())) {
+                customerData.setAll(entries);
             }
         });
     }
 
     private void refreshCustomersTable() {
-        List<Customer> customers = controller.getAllCustomers();
-        customerData.setAll(customers);
-
-        // Debug: Print customer details to console
-        System.out.println("=== CUSTOMER DATA ===");
-        for (Customer customer : customers) {
-            System.out.println("ID: " + customer.getCustomerId());
-            System.out.println("Name: " + getCustomerDisplayName(customer));
-            System.out.println("Address: " + getCustomerAddress(customer));
-            System.out.println("Type: " + customer.getClass().getSimpleName());
-            System.out.println("---");
+        if (isSearching()) {
+            showSearchResults();
+            return;
         }
+        whenDone(null, controller.getSnapshotAsync(), snapshot -> {
+            if (isSearching()) return; // a search was typed while the snapshot was being built
+            customerData.setAll(snapshot.customers());
+        });
     }
 
     private void showAlert(String title, String message) {
@@ -511,12 +552,15 @@ public class ClerkView {
     }
 
     private void logout() {
-        controller.getBankController().saveData();
-        LoginView loginView = new LoginView(
-                new LoginController(controller.getBankController()),
-                primaryStage
-        );
-        primaryStage.getScene().setRoot(loginView.getView());
+        controller.getBankController().getEvents().unsubscribe(bankEvents);
+        // Back to the login screen once the save, and anything queued before it, is done
+        whenDone(null, controller.getBankController().saveDataInBackground(), done -> {
+            LoginView loginView = new LoginView(
+                    new LoginController(controller.getBankController()),
+                    primaryStage
+            );
+            primaryStage.getScene().setRoot(loginView.getView());
+        });
     }
 
     public BorderPane getView() {
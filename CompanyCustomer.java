@@ -1,5 +1,8 @@
 public class CompanyCustomer extends Customer {
     private static int idCounter = 2000;
+    // -Dbank.lockFreeCompanyAccounts=true moves company cheque and investment accounts, the ones
+    // with heavy concurrent deposit traffic, onto the lock-free balance path
+    private static final boolean LOCK_FREE_ACCOUNTS = Boolean.getBoolean("bank.lockFreeCompanyAccounts");
     final int customerId;
     final String companyName;
     final String cellNumber;
@@ -21,6 +24,7 @@ public class CompanyCustomer extends Customer {
     @Override
     public void openAccount(String type, double initialDeposit, String branch, String... extra) {
         String accNo = getCustomerId() + "-A" + (accounts.size() + 1);
+        long cents = Money.ofDouble(initialDeposit);
         System.out.println("DEBUG: Opening account - Type: " + type + ", Initial Deposit: " + initialDeposit);
 
         switch (type.toLowerCase()) {
@@ -29,21 +33,26 @@ public class CompanyCustomer extends Customer {
                 if (initialDeposit < 1000) {
                     throw new IllegalArgumentException("Minimum initial deposit for Savings Account is $1000");
                 }
-                accounts.add(new SavingsAccount(accNo, initialDeposit, branch, this));
+                addAccount(new SavingsAccount(accNo, cents, branch, this));
                 System.out.println("DEBUG: Savings account created with balance: " + initialDeposit);
                 break;
             case "investment":
-                accounts.add(new InvestmentAccount(accNo, initialDeposit, branch, this));
+                addAccount(lockFree(new InvestmentAccount(accNo, cents, branch, this)));
                 break;
             case "cheque":
                 if (extra.length < 2) throw new IllegalArgumentException("Employer & address required");
-                accounts.add(new ChequeAccount(accNo, initialDeposit, branch, this, extra[0], extra[1]));
+                addAccount(lockFree(new ChequeAccount(accNo, cents, branch, this, extra[0], extra[1])));
                 break;
             default:
                 throw new IllegalArgumentException("Unknown account type");
         }
     }
 
+    private static Account lockFree(Account account) {
+        account.setLockFree(LOCK_FREE_ACCOUNTS);
+        return account;
+    }
+
     public String getBranch() {
         return branch;
     }
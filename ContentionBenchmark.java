@@ -0,0 +1,74 @@
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the two balance paths under contention: every thread posts to the same investment
+ * account, first through the account lock and then lock-free (compare-and-set balance, queued
+ * ledger rows). Each round also checks that no posting was lost.
+ *
+ * Run: java ContentionBenchmark [threads] [postingsPerThread]
+ */
+public class ContentionBenchmark {
+    private static final int ROUNDS = 5;
+    private static final long START_BALANCE = 1_000_000 * Money.CENTS_PER_UNIT;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int postings = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Bank bank = new Bank("Benchmark");
+        Customer company = bank.addCompanyCustomer("Benchmark Ltd", "1 Test Road", "000", "Main Branch");
+        company.openAccount("investment", Money.toDouble(START_BALANCE), "Main Branch");
+        Account account = company.getAccounts().get(0);
+
+        System.out.printf("%d threads, %,d postings each, one account%n", threads, postings);
+        for (int round = 1; round <= ROUNDS; round++) {
+            // The first rounds warm up the JIT; the last one is the figure to read
+            for (boolean lockFree : new boolean[]{false, true}) {
+                account.setLockFree(lockFree);
+                long nanos = run(account, threads, postings);
+                long ops = (long) threads * postings;
+                System.out.printf("round %d  %-9s %,12.0f postings/s  %s%n", round,
+                        lockFree ? "lock-free" : "locked", ops * 1e9 / nanos, verify(account, ops));
+                account.restoreBalance(START_BALANCE);
+                account.deferHistory(history -> { }); // drop the rows, they only cost memory here
+            }
+        }
+    }
+
+    // Three deposits to each withdrawal, one cent apiece
+    private static long run(Account account, int threads, int postings) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < postings; i++) {
+                    if ((i & 3) == 3) {
+                        account.debit(TransactionType.WITHDRAW, 1, now);
+                    } else {
+                        account.credit(TransactionType.DEPOSIT, 1, now);
+                    }
+                }
+                done.countDown();
+            });
+            worker.start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - began;
+    }
+
+    private static String verify(Account account, long ops) {
+        long expected = START_BALANCE + ops / 2;
+        int rows = account.getLedger().size();
+        return account.getBalanceCents() == expected && rows == ops
+                ? "ok"
+                : "MISMATCH balance " + account.getBalanceCents() + " expected " + expected + ", rows " + rows;
+    }
+}
@@ -9,6 +9,9 @@ public abstract class Customer implements Serializable {
     protected final String surname;
     protected final String address;
     protected final List<Account> accounts = new ArrayList<>();
+    private transient Bank bank; // set once the customer is registered with a bank
+    private transient int position;  // index in the bank's customer list
+    private transient volatile boolean dirty = true;
 
     public Customer(String firstName, String surname, String address) {
         this.firstName = firstName;
@@ -20,20 +23,66 @@ public abstract class Customer implements Serializable {
 
     public abstract void openAccount(String type, double initialDeposit, String branch, String... extra);
 
+    void attachTo(Bank bank, int position) {
+        this.bank = bank;
+        this.position = position;
+        accounts.forEach(bank::indexAccount);
+        if (dirty) {
+            bank.customerChanged(this);
+        }
+    }
+
+    /* Adds a newly opened account and keeps the bank's account index in step */
+    protected void addAccount(Account account) {
+        accounts.add(account);
+        if (bank != null) {
+            bank.indexAccount(account);
+        }
+        markDirty();
+    }
+
+    /* ----- dirty tracking: set by any change that has not been saved yet ----- */
+    void markDirty() {
+        if (dirty) return;
+        dirty = true;
+        if (bank != null) {
+            bank.customerChanged(this);
+        }
+    }
+
+    void clearDirty() {
+        dirty = false;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
     public void deposit(String accountNumber, double amount) {
-        Account a = findAccount(accountNumber);
-        a.deposit(amount);
-        a.addTransaction(new Transaction("DEPOSIT", amount));
+        deposit(accountNumber, Money.ofDouble(amount), System.currentTimeMillis());
+    }
+
+    /* Same as deposit, in cents and with the time to record; a replayed posting keeps its original one */
+    void deposit(String accountNumber, long cents, long epochMillis) {
+        findAccount(accountNumber).credit(TransactionType.DEPOSIT, cents, epochMillis);
     }
 
     public boolean withdraw(String accountNumber, double amount) {
-        System.out.println("DEBUG: Customer.withdraw called");
-        Account a = findAccount(accountNumber);
-        boolean ok = a.withdraw(amount);
-        if (ok) {
-            a.addTransaction(new Transaction("WITHDRAW", amount));
-        }
-        return ok;
+        return withdraw(accountNumber, Money.ofDouble(amount), System.currentTimeMillis());
+    }
+
+    /* Same as withdraw, in cents; runs on every batch row and replayed record, so it stays quiet */
+    boolean withdraw(String accountNumber, long cents, long epochMillis) {
+        return findAccount(accountNumber).debit(TransactionType.WITHDRAW, cents, epochMillis);
+    }
+
+    /* Moves money between two of this customer's accounts as one step */
+    public boolean transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        return transfer(fromAccountNumber, toAccountNumber, Money.ofDouble(amount), System.currentTimeMillis());
+    }
+
+    boolean transfer(String fromAccountNumber, String toAccountNumber, long cents, long epochMillis) {
+        return Account.transfer(findAccount(fromAccountNumber), findAccount(toAccountNumber), cents, epochMillis);
     }
 
     public void applyInterestToAllAccounts() {
@@ -1,4 +1,7 @@
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CustomerController {
     private Customer customer;
@@ -41,8 +44,7 @@ public class CustomerController {
 
             // If validation passes, process the deposit
             System.out.println("DEBUG: Proceeding with actual deposit...");
-            customer.deposit(accountNumber, amount);
-            bankController.saveData();
+            bankController.deposit(accountNumber, amount);
             System.out.println("DEBUG: Deposit completed successfully");
             return String.format("Successfully deposited $%.2f to account %s", amount, accountNumber);
 
@@ -97,8 +99,20 @@ public class CustomerController {
                 return "Withdrawal failed: Cannot withdraw from Savings Account. Please use a different account type.";
             }
 
-            boolean success = customer.withdraw(accountNumber, amount);
-            bankController.saveData();
+            // Rolling hourly and daily limits, reserved up front and handed back if the withdrawal fails
+            VelocityLimiter limiter = bankController.getVelocityLimiter();
+            long cents = Money.ofDouble(amount);
+            long now = System.currentTimeMillis();
+            String breach = limiter.tryReserve(account, cents, now);
+            if (breach != null) {
+                return "Withdrawal failed: " + breach;
+            }
+            boolean success = false;
+            try {
+                success = bankController.withdraw(accountNumber, amount);
+            } finally {
+                if (!success) limiter.release(account, cents, now);
+            }
             return success ?
                     String.format("Successfully withdrew $%.2f from account %s", amount, accountNumber) :
                     "Withdrawal failed: Insufficient funds or invalid amount";
@@ -109,6 +123,77 @@ public class CustomerController {
         }
     }
 
+    /* One posting on both accounts instead of a withdraw and a deposit, each saved on its own */
+    public String transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        try {
+            if (amount <= 0) {
+                return "Transfer amount must be greater than 0";
+            }
+            if (fromAccountNumber.equals(toAccountNumber)) {
+                return "Transfer failed: Choose two different accounts";
+            }
+
+            // Both must be this customer's own accounts
+            Account from = customer.findAccount(fromAccountNumber);
+            Account to = customer.findAccount(toAccountNumber);
+            if (from instanceof SavingsAccount) {
+                return "Transfer failed: Cannot withdraw from Savings Account. Please use a different account type.";
+            }
+            if (to instanceof SavingsAccount && amount < 1000) {
+                return "Transfer failed: Minimum deposit for Savings Account is $1000";
+            }
+
+            // The source is debited like a withdrawal, so the transfer counts against the same limits
+            VelocityLimiter limiter = bankController.getVelocityLimiter();
+            long cents = Money.ofDouble(amount);
+            long now = System.currentTimeMillis();
+            String breach = limiter.tryReserve(from, cents, now);
+            if (breach != null) {
+                return "Transfer failed: " + breach;
+            }
+            boolean success = false;
+            try {
+                success = bankController.transfer(fromAccountNumber, toAccountNumber, amount);
+            } finally {
+                if (!success) limiter.release(from, cents, now);
+            }
+            return success ?
+                    String.format("Successfully transferred $%.2f from account %s to account %s", amount, fromAccountNumber, toAccountNumber) :
+                    "Transfer failed: Insufficient funds or invalid amount";
+        } catch (IllegalArgumentException e) {
+            return "Transfer failed: " + e.getMessage();
+        } catch (Exception e) {
+            return "Error during transfer: " + e.getMessage();
+        }
+    }
+
+    /* ----- the same operations on the bank's worker thread, for views ----- */
+    public CompletableFuture<String> depositAsync(String accountNumber, double amount) {
+        return bankController.inBackground(() -> deposit(accountNumber, amount));
+    }
+
+    public CompletableFuture<String> withdrawAsync(String accountNumber, double amount) {
+        return bankController.inBackground(() -> withdraw(accountNumber, amount));
+    }
+
+    public CompletableFuture<String> transferAsync(String fromAccountNumber, String toAccountNumber, double amount) {
+        return bankController.inBackground(() -> transfer(fromAccountNumber, toAccountNumber, amount));
+    }
+
+    public CompletableFuture<Void> recordBalanceCheckAsync(String accountNumber) {
+        return bankController.inBackground(() -> {
+            recordBalanceCheck(accountNumber);
+            return null;
+        });
+    }
+
+    // The first page read of a history loads it from disk, so views ask for pages this way
+    public CompletableFuture<TransactionPage> getTransactionPageAsync(String accountNumber, LocalDate from, LocalDate to,
+                                                                      TransactionPage.SortBy sortBy, boolean descending,
+                                                                      int offset, int limit) {
+        return bankController.inBackground(() -> getTransactionPage(accountNumber, from, to, sortBy, descending, offset, limit));
+    }
+
     public double getBalance(String accountNumber) {
         try {
             Account account = customer.findAccount(accountNumber);
@@ -118,6 +203,11 @@ public class CustomerController {
         }
     }
 
+    public void recordBalanceCheck(String accountNumber) {
+        customer.findAccount(accountNumber); // only the customer's own accounts
+        bankController.recordBalanceCheck(accountNumber);
+    }
+
     public List<Transaction> getTransactionHistory(String accountNumber) {
         try {
             Account account = customer.findAccount(accountNumber);
@@ -127,6 +217,45 @@ public class CustomerController {
         }
     }
 
+    /* History between two dates, inclusive, looked up through the account's time index */
+    public List<Transaction> getTransactionHistory(String accountNumber, LocalDate from, LocalDate to) {
+        try {
+            Account account = customer.findAccount(accountNumber);
+            return account.getTransactionsBetween(startMillis(from), endMillis(to));
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    /* One sorted page of the history between two dates, inclusive; either date may be null */
+    public TransactionPage getTransactionPage(String accountNumber, LocalDate from, LocalDate to,
+                                              TransactionPage.SortBy sortBy, boolean descending, int offset, int limit) {
+        try {
+            Account account = customer.findAccount(accountNumber);
+            return account.getTransactionPage(startMillis(from), endMillis(to), sortBy, descending, offset, limit);
+        } catch (Exception e) {
+            return TransactionPage.EMPTY;
+        }
+    }
+
+    /* Newest first from beforeMillis; pass the page's getNextBefore() back in for the next one */
+    public TransactionPage getTransactionsBefore(String accountNumber, long beforeMillis, int limit) {
+        try {
+            return customer.findAccount(accountNumber).getTransactionsBefore(beforeMillis, limit);
+        } catch (Exception e) {
+            return TransactionPage.EMPTY;
+        }
+    }
+
+    private static long startMillis(LocalDate from) {
+        return from == null ? Long.MIN_VALUE : from.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // The end is exclusive, so the whole of the last day is in
+    private static long endMillis(LocalDate to) {
+        return to == null ? Long.MAX_VALUE : to.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
     public List<Account> getAccounts() {
         return customer.getAccounts();
     }
@@ -66,7 +66,17 @@ public class CustomerMenu {
     private void transactionHistory() {
         String acc = selectAccount();
         if (acc == null) return;
-        customer.findAccount(acc).getTransactions().forEach(System.out::println);
+        // Newest first, a page at a time, so a long history starts printing at once
+        Account account = customer.findAccount(acc);
+        long before = Long.MAX_VALUE;
+        while (true) {
+            TransactionPage page = account.getTransactionsBefore(before, 20);
+            page.getTransactions().forEach(System.out::println);
+            if (!page.hasMore()) return;
+            System.out.print("Enter for older transactions, q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) return;
+            before = page.getNextBefore();
+        }
     }
 
     private String selectAccount() {
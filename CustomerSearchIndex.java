@@ -0,0 +1,156 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index over customer names, company names, addresses, branches and IDs, for
+ * type-ahead search.
+ *
+ * Every field is split into lower-case words, and each word maps to the positions of the
+ * customers that contain it, in bank order. The words are kept sorted, so all the words that
+ * start with what has been typed so far are one contiguous range of the map. A query matches
+ * customers that have, for every word typed, some word starting with it.
+ *
+ * Customers are added by one writer at a time (BankController's write lock); searches read the
+ * index without locking it.
+ */
+final class CustomerSearchIndex {
+    private static final int MAX_WORDS_COUNTED = 4096;
+
+    private final List<Customer> customers; // the bank's list, by position
+    private final ConcurrentSkipListMap<String, Postings> words = new ConcurrentSkipListMap<>();
+
+    CustomerSearchIndex(List<Customer> customers) {
+        this.customers = customers;
+    }
+
+    void add(Customer c) {
+        int position = c.getPosition();
+        for (String field : fields(c)) {
+            for (String word : words(field)) {
+                words.computeIfAbsent(word, w -> new Postings()).add(position);
+            }
+        }
+    }
+
+    /* Up to limit matching customers, in bank order */
+    List<Customer> search(String query, int limit) {
+        List<String> typed = words(query);
+        if (typed.isEmpty() || limit <= 0) return List.of();
+
+        // Candidates come from the typed word with the fewest customers; the rest are checked on each one
+        String lead = typed.get(0);
+        long fewest = count(lead, Long.MAX_VALUE);
+        for (int i = 1; i < typed.size(); i++) {
+            long n = count(typed.get(i), fewest);
+            if (n < fewest) {
+                fewest = n;
+                lead = typed.get(i);
+            }
+        }
+
+        Set<Integer> found = new TreeSet<>();
+        for (Postings postings : startingWith(lead).values()) {
+            int size = postings.size; // size first, then ids; see Postings
+            int[] ids = postings.ids;
+            for (int i = 0; i < size && found.size() < limit; i++) {
+                if (!found.contains(ids[i]) && matchesAll(customers.get(ids[i]), typed)) {
+                    found.add(ids[i]);
+                }
+            }
+            if (found.size() >= limit) break;
+        }
+        List<Customer> result = new ArrayList<>(found.size());
+        for (int position : found) {
+            result.add(customers.get(position));
+        }
+        return result;
+    }
+
+    // Customers under words starting with prefix, counting no further than stopAt. A prefix of
+    // more than MAX_WORDS_COUNTED words, such as a single digit, counts as unselective
+    private long count(String prefix, long stopAt) {
+        long n = 0;
+        int counted = 0;
+        for (Postings postings : startingWith(prefix).values()) {
+            n += postings.size;
+            if (n >= stopAt) break;
+            if (++counted > MAX_WORDS_COUNTED) return Long.MAX_VALUE;
+        }
+        return n;
+    }
+
+    private NavigableMap<String, Postings> startingWith(String prefix) {
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // Checked on the customer's own fields, which is far cheaper than another walk of the index
+    private static boolean matchesAll(Customer c, List<String> typed) {
+        String[] fields = fields(c);
+        for (String word : typed) {
+            boolean found = false;
+            for (int f = 0; f < fields.length && !found; f++) {
+                found = hasWordStartingWith(fields[f], word);
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasWordStartingWith(String text, String prefix) {
+        if (text == null) return false;
+        for (int i = 0; i + prefix.length() <= text.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (wordStart && text.regionMatches(true, i, prefix, 0, prefix.length())) return true;
+        }
+        return false;
+    }
+
+    // For company customers, surname holds the company name
+    private static String[] fields(Customer c) {
+        String branch = null;
+        if (c instanceof IndividualCustomer) {
+            branch = ((IndividualCustomer) c).getBranch();
+        } else if (c instanceof CompanyCustomer) {
+            branch = ((CompanyCustomer) c).getBranch();
+        }
+        return new String[]{c.firstName, c.surname, c.address, branch, c.getCustomerId()};
+    }
+
+    static List<String> words(String text) {
+        List<String> out = new ArrayList<>(4);
+        if (text == null) return out;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    /*
+     * Customer positions for one word, ascending. One writer appends; readers take size and then
+     * the array, and since the element is stored before size is published, they see every
+     * element below size.
+     */
+    private static final class Postings {
+        volatile int[] ids = new int[2];
+        volatile int size;
+
+        void add(int position) {
+            if (size > 0 && ids[size - 1] == position) return; // the same word twice in one customer
+            int[] current = ids;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = position;
+            ids = current;
+            size = size + 1;
+        }
+    }
+}
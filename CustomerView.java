@@ -1,3 +1,4 @@
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -6,9 +7,13 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class CustomerView {
     private CustomerController controller;
@@ -18,14 +23,70 @@ public class CustomerView {
     private TableView<Account> accountsTable;
     private TableView<Transaction> transactionsTable;
     private ObservableList<Account> accountData;
-    private ObservableList<Transaction> transactionData;
+    private PagedTransactionList transactionPages;
+    private final ObservableList<String> accountNumbers = FXCollections.observableArrayList();
+    private String shownHistoryAccount; // account whose history the transactions table shows, if any
     private ComboBox<String> bankingAccountCombo;
+    private ComboBox<String> transferTargetCombo;
+    private DatePicker fromDatePicker;
+    private DatePicker toDatePicker;
+    private final ProgressIndicator busyIndicator = new ProgressIndicator();
+    private int operationsRunning;
 
     public CustomerView(CustomerController controller, Stage primaryStage) {
         this.controller = controller;
         this.primaryStage = primaryStage;
         createView();
         refreshData();
+        controller.getBankController().getEvents().subscribe(bankEvents);
+    }
+
+    /* ----- change events: rows are added or redrawn as they change, not reloaded ----- */
+    private final Consumer<BankEvent> bankEvents = event -> {
+        if (Platform.isFxApplicationThread()) {
+            applyEvent(event);
+        } else {
+            Platform.runLater(() -> applyEvent(event));
+        }
+    };
+
+    private void applyEvent(BankEvent event) {
+        if (event instanceof BankEvent.AccountOpened) {
+            Account account = ((BankEvent.AccountOpened) event).getAccount();
+            if (account.owner != controller.getCustomer()) return;
+            accountData.add(account);
+            accountNumbers.add(account.getAccountNumber());
+        } else if (event instanceof BankEvent.BalanceChanged) {
+            Account account = ((BankEvent.BalanceChanged) event).getAccount();
+            int row = accountData.indexOf(account);
+            if (row >= 0) {
+                accountData.set(row, account); // same object; set makes the table redraw that row
+            }
+        } else if (event instanceof BankEvent.TransactionAppended) {
+            BankEvent.TransactionAppended appended = (BankEvent.TransactionAppended) event;
+            if (appended.getAccount().getAccountNumber().equals(shownHistoryAccount)) {
+                transactionPages.refresh(); // counts it only if it falls in the dates on show
+            }
+        }
+    }
+
+    /* ----- background work: anything that saves runs on the bank's worker thread ----- */
+    // Disables the button, if any, and shows the busy indicator until the work is done, then hands
+    // the result to onDone back on the FX thread
+    private <T> void whenDone(Button button, CompletableFuture<T> work, Consumer<T> onDone) {
+        operationsRunning++;
+        busyIndicator.setVisible(true);
+        if (button != null) button.setDisable(true);
+        work.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (--operationsRunning == 0) busyIndicator.setVisible(false);
+            if (button != null) button.setDisable(false);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                showAlert("Error", "Operation failed: " + cause.getMessage());
+            } else {
+                onDone.accept(result);
+            }
+        }));
     }
 
     private void createView() {
@@ -81,8 +142,11 @@ public class CustomerView {
         logoutButton.getStyleClass().add("logout-button");
         logoutButton.setOnAction(e -> logout());
 
+        busyIndicator.setPrefSize(28, 28);
+        busyIndicator.setVisible(false);
+
         HBox.setHgrow(customerInfo, Priority.ALWAYS);
-        header.getChildren().addAll(customerInfo, logoutButton);
+        header.getChildren().addAll(customerInfo, busyIndicator, logoutButton);
 
         return header;
     }
@@ -180,7 +244,15 @@ public class CustomerView {
         viewTransactionsBtn.getStyleClass().add("primary-button");
         viewTransactionsBtn.setOnAction(e -> viewTransactions());
 
-        selectionBox.getChildren().addAll(accountLabel, accountComboBox, viewTransactionsBtn);
+        // Optional date range; either end may be left empty
+        fromDatePicker = new DatePicker();
+        fromDatePicker.setPromptText("From");
+        fromDatePicker.setPrefWidth(140);
+        toDatePicker = new DatePicker();
+        toDatePicker.setPromptText("To");
+        toDatePicker.setPrefWidth(140);
+
+        selectionBox.getChildren().addAll(accountLabel, accountComboBox, fromDatePicker, toDatePicker, viewTransactionsBtn);
 
         // Transactions Table
         transactionsTable = new TableView<>();
@@ -197,16 +269,18 @@ public class CustomerView {
         TableColumn<Transaction, String> dateCol = new TableColumn<>("Date & Time");
         dateCol.setCellValueFactory(cellData -> {
             Transaction transaction = cellData.getValue();
+            if (transaction == null) return null; // its page is still on the way
             String formatted = transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
             return new javafx.beans.property.SimpleStringProperty(formatted);
         });
         dateCol.setPrefWidth(200);
+        dateCol.setUserData(TransactionPage.SortBy.TIME);
 
-        TableColumn<Transaction, String> typeCol = new TableColumn<>("Transaction Type");
+        TableColumn<Transaction, TransactionType> typeCol = new TableColumn<>("Transaction Type");
         typeCol.setCellValueFactory(new PropertyValueFactory<>("type"));
-        typeCol.setCellFactory(col -> new TableCell<Transaction, String>() {
+        typeCol.setCellFactory(col -> new TableCell<Transaction, TransactionType>() {
             @Override
-            protected void updateItem(String item, boolean empty) {
+            protected void updateItem(TransactionType item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
@@ -214,25 +288,33 @@ public class CustomerView {
                 } else {
                     // Show proper transaction type names
                     String displayText;
-                    switch (item.toUpperCase()) {
-                        case "DEPOSIT":
+                    switch (item) {
+                        case DEPOSIT:
                             displayText = "💰 Deposit";
                             setStyle("-fx-text-fill: #059669; -fx-font-weight: bold;");
                             break;
-                        case "WITHDRAW":
+                        case WITHDRAW:
                             displayText = "💸 Withdrawal";
                             setStyle("-fx-text-fill: #dc2626; -fx-font-weight: bold;");
                             break;
-                        case "INTEREST":
+                        case INTEREST:
                             displayText = "📈 Interest";
                             setStyle("-fx-text-fill: #d97706; -fx-font-weight: bold;");
                             break;
-                        case "BALANCE_CHECK":
+                        case BALANCE_CHECK:
                             displayText = "👁️ Balance Check";
                             setStyle("-fx-text-fill: #3b82f6; -fx-font-weight: bold;");
                             break;
+                        case TRANSFER_IN:
+                            displayText = "🔁 Transfer In";
+                            setStyle("-fx-text-fill: #059669; -fx-font-weight: bold;");
+                            break;
+                        case TRANSFER_OUT:
+                            displayText = "🔁 Transfer Out";
+                            setStyle("-fx-text-fill: #dc2626; -fx-font-weight: bold;");
+                            break;
                         default:
-                            displayText = item;
+                            displayText = item.name();
                             setStyle("-fx-text-fill: #4b5563;");
                     }
                     setText(displayText);
@@ -240,6 +322,7 @@ public class CustomerView {
             }
         });
         typeCol.setPrefWidth(150);
+        typeCol.setUserData(TransactionPage.SortBy.TYPE);
 
         TableColumn<Transaction, Double> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
@@ -247,15 +330,18 @@ public class CustomerView {
             @Override
             protected void updateItem(Double item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || item == null) {
+                // The row's own transaction; the list may no longer hold its page, so it is not read again
+                Transaction transaction = getTableRow() == null ? null : getTableRow().getItem();
+                if (empty || item == null || transaction == null) {
                     setText(null);
                     setStyle("");
                 } else {
-                    Transaction transaction = getTableView().getItems().get(getIndex());
-                    if (transaction.getType().equalsIgnoreCase("DEPOSIT") || transaction.getType().equalsIgnoreCase("INTEREST")) {
+                    TransactionType type = transaction.getType();
+                    if (type == TransactionType.DEPOSIT || type == TransactionType.INTEREST
+                            || type == TransactionType.TRANSFER_IN) {
                         setText(String.format("+$%.2f", item));
                         setStyle("-fx-text-fill: #059669; -fx-font-weight: bold;");
-                    } else if (transaction.getType().equalsIgnoreCase("WITHDRAW")) {
+                    } else if (type == TransactionType.WITHDRAW || type == TransactionType.TRANSFER_OUT) {
                         setText(String.format("-$%.2f", item));
                         setStyle("-fx-text-fill: #dc2626; -fx-font-weight: bold;");
                     } else {
@@ -266,10 +352,34 @@ public class CustomerView {
             }
         });
         amountCol.setPrefWidth(120);
+        amountCol.setUserData(TransactionPage.SortBy.AMOUNT);
 
         transactionsTable.getColumns().addAll(dateCol, typeCol, amountCol);
-        transactionData = FXCollections.observableArrayList();
-        transactionsTable.setItems(transactionData);
+        transactionsTable.setItems(FXCollections.observableArrayList());
+
+        // The table holds only the pages on screen, so a header click asks the account for the new order
+        transactionsTable.setSortPolicy(table -> {
+            if (transactionPages != null
+                    && (transactionPages.sortBy != requestedSort() || transactionPages.descending != requestedDescending())) {
+                // Swapped in once the first page in the new order is in, after the table's own sort call returns
+                whenDone(null, transactionPages.reordered(requestedSort(), requestedDescending()), pages -> {
+                    transactionPages = pages;
+                    transactionsTable.setItems(pages);
+                });
+            }
+            return true;
+        });
+    }
+
+    // The order picked with the column headers; oldest first when none is
+    private TransactionPage.SortBy requestedSort() {
+        List<TableColumn<Transaction, ?>> order = transactionsTable.getSortOrder();
+        return order.isEmpty() ? TransactionPage.SortBy.TIME : (TransactionPage.SortBy) order.get(0).getUserData();
+    }
+
+    private boolean requestedDescending() {
+        List<TableColumn<Transaction, ?>> order = transactionsTable.getSortOrder();
+        return !order.isEmpty() && order.get(0).getSortType() == TableColumn.SortType.DESCENDING;
     }
 
     private VBox createBankingTab() {
@@ -338,7 +448,10 @@ public class CustomerView {
         // Withdrawal Box
         VBox withdrawBox = createWithdrawOperationBox();
 
-        operationsContainer.getChildren().addAll(depositBox, withdrawBox);
+        // Transfer Box
+        VBox transferBox = createTransferOperationBox();
+
+        operationsContainer.getChildren().addAll(depositBox, withdrawBox, transferBox);
 
         // Balance Check
         VBox balanceBox = createBalanceBox();
@@ -392,18 +505,18 @@ public class CustomerView {
                     return;
                 }
 
-                // Call the controller and get the result
-                String result = controller.deposit(accountNum, amount);
-                System.out.println("DEBUG: UI - Deposit result: " + result);
+                // Call the controller off the FX thread and handle the result when it is back
+                whenDone(operationButton, controller.depositAsync(accountNum, amount), result -> {
+                    System.out.println("DEBUG: UI - Deposit result: " + result);
 
-                // Check the result and show appropriate alert
-                if (result.contains("Successfully")) {
-                    showAlert("Deposit Success", result);
-                    refreshData();
-                    amountField.clear();
-                } else {
-                    showAlert("Deposit Failed", result);
-                }
+                    // Check the result and show appropriate alert
+                    if (result.contains("Successfully")) {
+                        showAlert("Deposit Success", result);
+                        amountField.clear();
+                    } else {
+                        showAlert("Deposit Failed", result);
+                    }
+                });
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Please enter a valid amount!");
             }
@@ -475,18 +588,18 @@ public class CustomerView {
                     return;
                 }
 
-                // Call the controller and get the result
-                String result = controller.withdraw(accountNum, amount);
-                System.out.println("DEBUG: UI - Withdraw result: " + result);
+                // Call the controller off the FX thread and handle the result when it is back
+                whenDone(operationButton, controller.withdrawAsync(accountNum, amount), result -> {
+                    System.out.println("DEBUG: UI - Withdraw result: " + result);
 
-                // Check the result and show appropriate alert
-                if (result.contains("Successfully")) {
-                    showAlert("Withdrawal Success", result);
-                    refreshData();
-                    amountField.clear();
-                } else {
-                    showAlert("Withdrawal Failed", result);
-                }
+                    // Check the result and show appropriate alert
+                    if (result.contains("Successfully")) {
+                        showAlert("Withdrawal Success", result);
+                        amountField.clear();
+                    } else {
+                        showAlert("Withdrawal Failed", result);
+                    }
+                });
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Please enter a valid amount!");
             }
@@ -496,6 +609,63 @@ public class CustomerView {
         return operationBox;
     }
 
+    private VBox createTransferOperationBox() {
+        VBox operationBox = new VBox(15);
+        operationBox.getStyleClass().add("operation-box");
+        operationBox.setPadding(new Insets(25));
+        operationBox.setAlignment(Pos.CENTER);
+        operationBox.setMinWidth(280);
+        operationBox.setMinHeight(200);
+
+        Label titleLabel = new Label("🔁 Transfer");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #7c3aed;");
+
+        transferTargetCombo = new ComboBox<>();
+        transferTargetCombo.setPromptText("To account...");
+        transferTargetCombo.getStyleClass().add("modern-text-field");
+        transferTargetCombo.setPrefWidth(200);
+
+        TextField amountField = new TextField();
+        amountField.setPromptText("Enter amount...");
+        amountField.getStyleClass().add("modern-text-field");
+        amountField.setPrefWidth(200);
+
+        Button operationButton = new Button("Transfer");
+        operationButton.getStyleClass().add("primary-button");
+        operationButton.setPrefWidth(200);
+
+        operationButton.setOnAction(e -> {
+            String fromAccount = bankingAccountCombo.getValue();
+            String toAccount = transferTargetCombo.getValue();
+            if (fromAccount == null || fromAccount.isEmpty() || toAccount == null || toAccount.isEmpty()) {
+                showAlert("Error", "Please select both accounts first!");
+                return;
+            }
+
+            try {
+                double amount = Double.parseDouble(amountField.getText());
+                if (amount <= 0) {
+                    showAlert("Error", "Amount must be greater than 0!");
+                    return;
+                }
+
+                whenDone(operationButton, controller.transferAsync(fromAccount, toAccount, amount), result -> {
+                    if (result.contains("Successfully")) {
+                        showAlert("Transfer Success", result);
+                        amountField.clear();
+                    } else {
+                        showAlert("Transfer Failed", result);
+                    }
+                });
+            } catch (NumberFormatException ex) {
+                showAlert("Error", "Please enter a valid amount!");
+            }
+        });
+
+        operationBox.getChildren().addAll(titleLabel, transferTargetCombo, amountField, operationButton);
+        return operationBox;
+    }
+
     private VBox createBalanceBox() {
         VBox balanceBox = new VBox(15);
         balanceBox.getStyleClass().add("operation-box");
@@ -538,17 +708,8 @@ public class CustomerView {
     }
 
     private void recordBalanceCheckTransaction(String accountNumber) {
-        // Create a balance check transaction
-        Transaction balanceCheck = new Transaction("BALANCE_CHECK", 0.0);
-
-        // Add to account's transaction history
-        try {
-            Account account = controller.getCustomer().findAccount(accountNumber);
-            account.addTransaction(balanceCheck);
-            controller.getBankController().saveData();
-        } catch (Exception e) {
-            // Silent fail - balance check transaction is optional
-        }
+        // Add a balance check to the account's transaction history; logged and saved in the background
+        whenDone(null, controller.recordBalanceCheckAsync(accountNumber), done -> {});
     }
 
     private void refreshData() {
@@ -557,13 +718,14 @@ public class CustomerView {
         accountData.setAll(accounts);
 
         // Refresh account comboboxes
-        ObservableList<String> accountNumbers = FXCollections.observableArrayList();
+        accountNumbers.clear();
         for (Account account : accounts) {
             accountNumbers.add(account.getAccountNumber());
         }
 
         accountComboBox.setItems(accountNumbers);
         bankingAccountCombo.setItems(accountNumbers);
+        transferTargetCombo.setItems(accountNumbers);
 
         if (!accountNumbers.isEmpty()) {
             if (accountComboBox.getValue() == null) {
@@ -578,14 +740,23 @@ public class CustomerView {
     private void viewTransactions() {
         String accountNum = accountComboBox.getValue();
         if (accountNum != null && !accountNum.isEmpty()) {
-            List<Transaction> transactions = controller.getTransactionHistory(accountNum);
-            transactionData.setAll(transactions);
-
-            if (transactions.isEmpty()) {
-                showAlert("Transactions", "No transactions found for this account.");
-            } else {
-                showAlert("Transactions", "Found " + transactions.size() + " transactions.");
-            }
+            LocalDate from = fromDatePicker.getValue();
+            LocalDate to = toDatePicker.getValue();
+            // Pages are fetched in the background as the table scrolls to them, so this opens as soon
+            // as the first one is in, at any history length
+            PagedTransactionList.PageSource source = (sortBy, descending, offset, limit) ->
+                    controller.getTransactionPageAsync(accountNum, from, to, sortBy, descending, offset, limit);
+            whenDone(null, PagedTransactionList.open(source, requestedSort(), requestedDescending()), pages -> {
+                transactionPages = pages;
+                transactionsTable.setItems(pages);
+                shownHistoryAccount = accountNum;
+
+                if (pages.isEmpty()) {
+                    showAlert("Transactions", "No transactions found for this account.");
+                } else {
+                    showAlert("Transactions", "Found " + pages.size() + " transactions.");
+                }
+            });
         } else {
             showAlert("Error", "Please select an account first!");
         }
@@ -605,12 +776,15 @@ public class CustomerView {
     }
 
     private void logout() {
-        controller.getBankController().saveData();
-        LoginView loginView = new LoginView(
-                new LoginController(controller.getBankController()),
-                primaryStage
-        );
-        primaryStage.getScene().setRoot(loginView.getView());
+        controller.getBankController().getEvents().unsubscribe(bankEvents);
+        // Back to the login screen once the save, and anything queued before it, is done
+        whenDone(null, controller.getBankController().saveDataInBackground(), done -> {
+            LoginView loginView = new LoginView(
+                    new LoginController(controller.getBankController()),
+                    primaryStage
+            );
+            primaryStage.getScene().setRoot(loginView.getView());
+        });
     }
 
     public BorderPane getView() {
@@ -0,0 +1,251 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Small in-process storage engine: named tables of sorted String keys to byte[] values,
+ * kept in one append-only data file.
+ *
+ * Writes are grouped into a Batch and committed as one frame: length | crc | records.
+ * A frame is only applied once it is completely on disk, so a crash mid-commit loses the whole
+ * batch and never half of it. Each table has an in-memory sorted index from key to the value's
+ * position in the file, which gives point lookups and ordered range scans without reading
+ * anything but the values asked for. Overwritten and deleted values are left behind as
+ * garbage until compact() rewrites the live ones into a fresh file.
+ */
+final class EmbeddedStore implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final int MAX_VALUE_LENGTH = 0xFFFFFF;
+    private static final int COMPACT_CHUNK = 4 << 20;
+
+    private final Path file;
+    private FileChannel channel;
+    private final Map<String, TreeMap<String, Long>> tables = new HashMap<>();
+    private long liveBytes;
+    // Set when a failed commit could not be cut back off the file; nothing more may be appended after it
+    private IOException failed;
+
+    EmbeddedStore(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /* ---------- READS ---------- */
+    synchronized byte[] get(String table, String key) throws IOException {
+        Long slot = index(table).get(key);
+        return slot == null ? null : read(slot);
+    }
+
+    /* Visits every row with fromKey <= key < toKey, in key order */
+    synchronized void scan(String table, String fromKey, String toKey,
+                           BiConsumer<String, byte[]> visitor) throws IOException {
+        for (Map.Entry<String, Long> e : index(table).subMap(fromKey, toKey).entrySet()) {
+            visitor.accept(e.getKey(), read(e.getValue()));
+        }
+    }
+
+    synchronized void scanPrefix(String table, String prefix,
+                                 BiConsumer<String, byte[]> visitor) throws IOException {
+        scan(table, prefix, prefix + Character.MAX_VALUE, visitor);
+    }
+
+    /* The keys with fromKey <= key < toKey, in key order, without reading their values */
+    synchronized List<String> keys(String table, String fromKey, String toKey) {
+        return new ArrayList<>(index(table).subMap(fromKey, toKey).keySet());
+    }
+
+    synchronized int count(String table) {
+        return index(table).size();
+    }
+
+    synchronized boolean isEmpty() {
+        return tables.values().stream().allMatch(Map::isEmpty);
+    }
+
+    /* ---------- WRITES ---------- */
+    Batch batch() {
+        return new Batch();
+    }
+
+    /* Writes that become visible together, or not at all */
+    final class Batch {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int records;
+
+        Batch put(String table, String key, byte[] value) throws IOException {
+            if (value.length > MAX_VALUE_LENGTH) throw new IOException("Value too large for " + table + "/" + key);
+            out.writeByte(PUT);
+            out.writeUTF(table);
+            out.writeUTF(key);
+            out.writeInt(value.length);
+            out.write(value);
+            records++;
+            return this;
+        }
+
+        Batch delete(String table, String key) throws IOException {
+            out.writeByte(DELETE);
+            out.writeUTF(table);
+            out.writeUTF(key);
+            records++;
+            return this;
+        }
+
+        void commit() throws IOException {
+            if (records == 0) return;
+            out.flush();
+            byte[] payload = bytes.toByteArray();
+            synchronized (EmbeddedStore.this) {
+                if (failed != null) throw new IOException("Store is read-only after a failed commit", failed);
+                long frameStart = channel.size();
+                ByteBuffer header = ByteBuffer.allocate(12);
+                header.putInt(payload.length).putLong(crc(payload, 0, payload.length)).flip();
+                try {
+                    write(header, frameStart);
+                    write(ByteBuffer.wrap(payload), frameStart + 12);
+                    channel.force(false);
+                } catch (IOException e) {
+                    // A torn frame left in place would make recovery drop every batch committed after it
+                    try {
+                        channel.truncate(frameStart);
+                        channel.force(false);
+                    } catch (IOException truncateFailed) {
+                        e.addSuppressed(truncateFailed);
+                        failed = e;
+                    }
+                    throw e;
+                }
+                apply(payload, frameStart + 12);
+            }
+        }
+    }
+
+    /* ---------- COMPACTION ---------- */
+    /* Bytes in the file that no longer back a live row */
+    synchronized long garbageBytes() throws IOException {
+        return channel.size() - liveBytes;
+    }
+
+    synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    /* Rewrites only the live rows into a fresh file and swaps it in */
+    synchronized void compact() throws IOException {
+        Path tmp = Paths.get(file + ".compact");
+        Files.deleteIfExists(tmp);
+        try (EmbeddedStore fresh = new EmbeddedStore(tmp)) {
+            // The fresh file only replaces this one once complete, so it is filled in chunks
+            Batch batch = fresh.batch();
+            for (Map.Entry<String, TreeMap<String, Long>> t : tables.entrySet()) {
+                for (Map.Entry<String, Long> row : t.getValue().entrySet()) {
+                    batch.put(t.getKey(), row.getKey(), read(row.getValue()));
+                    if (batch.bytes.size() > COMPACT_CHUNK) {
+                        batch.commit();
+                        batch = fresh.batch();
+                    }
+                }
+            }
+            batch.commit();
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        tables.clear();
+        liveBytes = 0;
+        recover();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /* ---------- INTERNALS ---------- */
+    private TreeMap<String, Long> index(String table) {
+        return tables.computeIfAbsent(table, t -> new TreeMap<>());
+    }
+
+    // A slot packs the value's file offset (high 40 bits) and length (low 24 bits)
+    private static long slot(long offset, int length) {
+        return (offset << 24) | length;
+    }
+
+    private byte[] read(long slot) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) (slot & 0xFFFFFF));
+        long pos = slot >>> 24;
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) throw new EOFException("Truncated value");
+        }
+        return buf.array();
+    }
+
+    private void write(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf, pos + buf.position());
+        }
+    }
+
+    /* Rebuilds the indexes from every complete frame and cuts off a torn one at the end */
+    private void recover() throws IOException {
+        long pos = 0, size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        while (pos + 12 <= size) {
+            header.clear();
+            channel.read(header, pos);
+            header.flip();
+            int length = header.getInt();
+            long crc = header.getLong();
+            if (length < 0 || pos + 12 + length > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && channel.read(payload, pos + 12 + payload.position()) >= 0) { }
+            if (crc(payload.array(), 0, length) != crc) break;
+            apply(payload.array(), pos + 12);
+            pos += 12 + length;
+        }
+        if (pos < size) {
+            System.out.println("Store recovery: discarding " + (size - pos) + " bytes of an incomplete commit");
+            channel.truncate(pos);
+        }
+    }
+
+    private void apply(byte[] payload, long payloadOffset) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while (in.available() > 0) {
+            int recordStart = payload.length - in.available();
+            byte op = in.readByte();
+            String table = in.readUTF();
+            String key = in.readUTF();
+            // Bytes a PUT of this key takes besides its value: op, table, key and length
+            int overhead = payload.length - in.available() - recordStart + 4;
+            Long old;
+            if (op == PUT) {
+                int length = in.readInt();
+                long valueOffset = payloadOffset + (payload.length - in.available());
+                in.skipBytes(length);
+                old = index(table).put(key, slot(valueOffset, length));
+                liveBytes += overhead + length;
+            } else {
+                old = index(table).remove(key);
+            }
+            if (old != null) {
+                liveBytes -= overhead + (old & 0xFFFFFF);
+            }
+        }
+    }
+
+    private static long crc(byte[] bytes, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, off, len);
+        return crc.getValue();
+    }
+}
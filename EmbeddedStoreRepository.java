@@ -0,0 +1,331 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Keeps the bank in an EmbeddedStore (bank.db) instead of flat files.
+ *
+ * Tables:
+ *   customers     position                      -> kind | name fields | branch
+ *   accounts      position/accountIndex         -> type | balance cents | branch | cheque extras | txn count
+ *                                                  [| accrued cent-days | as of epoch day, investment only]
+ *   transactions  accountNumber/time/sequence   -> type code | amount cents | epoch millis
+ *   meta          "lsn"                         -> log sequence number of the last save
+ * Keys are zero-padded so the sorted order of the store is the bank's order.
+ *
+ * A save writes the rows of dirty customers plus only the transactions added since the last
+ * save, and the new checkpoint LSN, in one batch; a posting older than stored ones also rewrites
+ * the stored rows after it. Histories are read with a prefix scan, already in time order, when an
+ * account first needs them.
+ */
+public class EmbeddedStoreRepository implements BankRepository {
+    private static final Path DB_FILE = Paths.get("bank.db");
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+
+    private static final String CUSTOMERS    = "customers";
+    private static final String ACCOUNTS     = "accounts";
+    private static final String TRANSACTIONS = "transactions";
+    private static final String META         = "meta";
+
+    private static final byte INDIVIDUAL = 1;
+    private static final byte COMPANY    = 2;
+
+    private static final byte SAVINGS    = 1;
+    private static final byte INVESTMENT = 2;
+    private static final byte CHEQUE     = 3;
+
+    private EmbeddedStore store;
+    // Transactions already in the store per account, so a save only appends the rest
+    private final Map<String, Integer> storedCounts = new HashMap<>();
+
+    private EmbeddedStore store() throws IOException {
+        if (store == null) {
+            store = new EmbeddedStore(DB_FILE);
+        }
+        return store;
+    }
+
+    @Override
+    public boolean hasData() {
+        try {
+            return store().count(CUSTOMERS) > 0;
+        } catch (IOException e) {
+            System.out.println("Load warning: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public long checkpointLsn() {
+        try {
+            byte[] lsn = store().get(META, "lsn");
+            return lsn == null ? 0 : new DataInputStream(new ByteArrayInputStream(lsn)).readLong();
+        } catch (IOException e) {
+            System.out.println("Recovery warning: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /* ---------- LOAD ---------- */
+    @Override
+    public void load(Bank bank) {
+        try {
+            // Customers come back in key order, which is their original sequence
+            List<Customer> loaded = new ArrayList<>();
+            store().scan(CUSTOMERS, "", "~", (key, value) -> {
+                try {
+                    loaded.add(readCustomer(value, bank));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            store().scan(ACCOUNTS, "", "~", (key, value) -> {
+                try {
+                    readAccount(value, loaded.get(Integer.parseInt(key.substring(0, 8))));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Load warning: " + e.getMessage());
+        }
+    }
+
+    private static Customer readCustomer(byte[] value, Bank bank) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        byte kind = in.readByte();
+        String a = in.readUTF(), b = in.readUTF(), c = in.readUTF(), branch = in.readUTF();
+        return kind == COMPANY
+                ? bank.addCompanyCustomer(a, b, c, branch)
+                : bank.addIndividualCustomer(a, b, c, branch);
+    }
+
+    private void readAccount(byte[] value, Customer owner) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        byte type = in.readByte();
+        double bal = Money.toDouble(in.readLong());
+        String branch = in.readUTF();
+        switch (type) {
+            case SAVINGS:
+                owner.openAccount("savings", Math.max(bal, 1000.0), branch);
+                break;
+            case INVESTMENT:
+                owner.openAccount("investment", bal, branch);
+                break;
+            case CHEQUE:
+                owner.openAccount("cheque", bal, branch, in.readUTF(), in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown account type code " + type);
+        }
+
+        Account acc = owner.getAccounts().get(owner.getAccounts().size() - 1);
+        int txnCount = in.readInt();
+        // Rows written before accrual was kept end here; the accrual then starts on load
+        if (acc instanceof InvestmentAccount && in.available() >= 16) {
+            ((InvestmentAccount) acc).restoreAccrual(in.readLong(), in.readLong());
+        }
+        storedCounts.put(acc.getAccountNumber(), txnCount);
+        if (txnCount > 0) {
+            acc.deferHistory(new StoreHistory(store(), acc.getAccountNumber()));
+        }
+    }
+
+    /* ---------- SAVE ---------- */
+    @Override
+    public boolean save(Bank bank, long lsn) {
+        // Accounts whose tails are written stay locked until they are deferred again, so a lazy load
+        // never sees the tail both in the store and in memory
+        Set<Account> unloaded = new HashSet<>();
+        try {
+            return save(bank, lsn, unloaded);
+        } finally {
+            unloaded.forEach(a -> a.getLock().unlock());
+        }
+    }
+
+    private boolean save(Bank bank, long lsn, Set<Account> unloaded) {
+        List<Customer> customers = bank.getCustomers();
+        BitSet dirty = bank.getDirtyCustomers();
+        Map<String, Integer> appended = new HashMap<>();
+        List<TransactionLedger> written = new ArrayList<>();
+
+        try {
+            EmbeddedStore.Batch batch = store().batch();
+            for (int i = dirty.nextSetBit(0); i >= 0 && i < customers.size(); i = dirty.nextSetBit(i + 1)) {
+                Customer c = customers.get(i);
+                batch.put(CUSTOMERS, String.format("%08d", i), encodeCustomer(c));
+
+                for (int n = 0; n < c.getAccounts().size(); n++) {
+                    Account a = c.getAccounts().get(n);
+                    String number = a.getAccountNumber();
+                    int stored = storedCounts.getOrDefault(number, 0);
+                    a.getLock().lock();
+                    if (a.getHistoryLoader() instanceof StoreHistory) {
+                        // An unloaded history only holds what was added since load, all of it new.
+                        // Sequences past the stored count never collide with a stored row
+                        unloaded.add(a);
+                        TransactionLedger tail = a.getUnloadedTail();
+                        for (int t = 0; t < tail.size(); t++) {
+                            batch.put(TRANSACTIONS, transactionKey(number, tail.timeAt(t), stored + t), encodeTransaction(tail, t));
+                        }
+                        stored += tail.size();
+                    } else {
+                        TransactionLedger ledger;
+                        try {
+                            ledger = a.getLedger();
+                        } finally {
+                            a.getLock().unlock();
+                        }
+                        int from = ledger.changedFrom();
+                        if (from < ledger.size()) {
+                            // An older posting lands among the stored rows, so every stored row from its
+                            // time on is replaced by the ledger's rows from there, keyed by position
+                            from = ledger.lowerBound(ledger.timeAt(from));
+                            Set<String> keys = new HashSet<>();
+                            for (int t = from; t < ledger.size(); t++) {
+                                String key = transactionKey(number, ledger.timeAt(t), t);
+                                keys.add(key);
+                                batch.put(TRANSACTIONS, key, encodeTransaction(ledger, t));
+                            }
+                            for (String old : store().keys(TRANSACTIONS, timePrefix(number, ledger.timeAt(from)), number + "/~")) {
+                                if (!keys.contains(old)) batch.delete(TRANSACTIONS, old);
+                            }
+                            written.add(ledger);
+                        }
+                        stored = ledger.size();
+                    }
+                    appended.put(number, stored);
+                    batch.put(ACCOUNTS, String.format("%08d/%04d", i, n), encodeAccount(a, stored));
+                }
+            }
+            batch.put(META, "lsn", encodeLong(lsn));
+            batch.commit();
+        } catch (IOException e) {
+            System.out.println("Save error: " + e.getMessage());
+            return false;
+        }
+
+        storedCounts.putAll(appended);
+        written.forEach(TransactionLedger::markStored);
+        // The tails just written are part of the stored history now
+        for (Account a : unloaded) {
+            a.deferHistory(new StoreHistory(store, a.getAccountNumber()));
+        }
+        compactIfWasteful();
+        return true;
+    }
+
+    /* Rewrites the file once more than half of it is overwritten rows */
+    private void compactIfWasteful() {
+        try {
+            long garbage = store.garbageBytes();
+            if (garbage > COMPACT_THRESHOLD && garbage > store.liveBytes()) {
+                store.compact();
+            }
+        } catch (IOException e) {
+            System.out.println("Compaction warning: " + e.getMessage());
+        }
+    }
+
+    /* ---------- ENCODING ---------- */
+    // Rows sort by time, and rows of the same millisecond by sequence, which follows posting order
+    private static String transactionKey(String accountNumber, long epochMillis, int sequence) {
+        return timePrefix(accountNumber, epochMillis) + String.format("/%010d", sequence);
+    }
+
+    // The sign bit is flipped so that the hex digits sort like the signed times
+    private static String timePrefix(String accountNumber, long epochMillis) {
+        return accountNumber + "/" + String.format("%016x", epochMillis ^ Long.MIN_VALUE);
+    }
+
+    private static byte[] encodeCustomer(Customer c) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (c instanceof CompanyCustomer) {
+            CompanyCustomer cc = (CompanyCustomer) c;
+            out.writeByte(COMPANY);
+            out.writeUTF(cc.companyName);
+            out.writeUTF(cc.address);
+            out.writeUTF(cc.cellNumber);
+            out.writeUTF(cc.getBranch());
+        } else {
+            IndividualCustomer ic = (IndividualCustomer) c;
+            out.writeByte(INDIVIDUAL);
+            out.writeUTF(ic.firstName);
+            out.writeUTF(ic.surname);
+            out.writeUTF(ic.address);
+            out.writeUTF(ic.getBranch());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeAccount(Account a, int txnCount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (a instanceof SavingsAccount) {
+            out.writeByte(SAVINGS);
+        } else if (a instanceof InvestmentAccount) {
+            out.writeByte(INVESTMENT);
+        } else {
+            out.writeByte(CHEQUE);
+        }
+        out.writeLong(a.getBalanceCents());
+        out.writeUTF(a.branch);
+        if (a instanceof ChequeAccount) {
+            ChequeAccount ch = (ChequeAccount) a;
+            out.writeUTF(ch.getEmployer());
+            out.writeUTF(ch.getCompanyAddress());
+        }
+        out.writeInt(txnCount);
+        if (a instanceof InvestmentAccount) {
+            long today = InvestmentAccount.epochDay(System.currentTimeMillis());
+            out.writeLong(((InvestmentAccount) a).getAccruedCentDays(today));
+            out.writeLong(today);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeTransaction(TransactionLedger ledger, int row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ledger.typeAt(row).getCode());
+        out.writeLong(ledger.amountAt(row));
+        out.writeLong(ledger.timeAt(row));
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeLong(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        new DataOutputStream(bytes).writeLong(value);
+        return bytes.toByteArray();
+    }
+
+    /* An account's transaction rows, read with one prefix scan */
+    private static final class StoreHistory implements HistoryLoader {
+        private final EmbeddedStore store;
+        private final String accountNumber;
+
+        StoreHistory(EmbeddedStore store, String accountNumber) {
+            this.store = store;
+            this.accountNumber = accountNumber;
+        }
+
+        @Override
+        public void loadInto(TransactionLedger history) throws IOException {
+            try {
+                store.scanPrefix(TRANSACTIONS, accountNumber + "/", (key, value) -> {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+                    try {
+                        history.add(TransactionType.fromCode((char) in.readByte()), in.readLong(), in.readLong());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                history.markStored();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
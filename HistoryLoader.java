@@ -0,0 +1,9 @@
+import java.io.IOException;
+
+/**
+ * Reads an account's stored transaction history on demand.
+ * Repositories attach one to each account at load time instead of hydrating every transaction.
+ */
+interface HistoryLoader {
+    void loadInto(TransactionLedger history) throws IOException;
+}
@@ -17,6 +17,7 @@ public class IndividualCustomer extends Customer {
     @Override
     public void openAccount(String type, double initialDeposit, String branch, String... extra) {
         String accNo = getCustomerId() + "-A" + (accounts.size() + 1);
+        long cents = Money.ofDouble(initialDeposit);
         System.out.println("DEBUG: Opening account - Type: " + type + ", Initial Deposit: " + initialDeposit);
 
         switch (type.toLowerCase()) {
@@ -25,15 +26,15 @@ public class IndividualCustomer extends Customer {
                 if (initialDeposit < 1000) {
                     throw new IllegalArgumentException("Minimum initial deposit for Savings Account is $1000");
                 }
-                accounts.add(new SavingsAccount(accNo, initialDeposit, branch, this));
+                addAccount(new SavingsAccount(accNo, cents, branch, this));
                 System.out.println("DEBUG: Savings account created with balance: " + initialDeposit);
                 break;
             case "investment":
-                accounts.add(new InvestmentAccount(accNo, initialDeposit, branch, this));
+                addAccount(new InvestmentAccount(accNo, cents, branch, this));
                 break;
             case "cheque":
                 if (extra.length < 2) throw new IllegalArgumentException("Employer & address required");
-                accounts.add(new ChequeAccount(accNo, initialDeposit, branch, this, extra[0], extra[1]));
+                addAccount(new ChequeAccount(accNo, cents, branch, this, extra[0], extra[1]));
                 break;
             default:
                 throw new IllegalArgumentException("Unknown account type");
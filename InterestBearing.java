@@ -1,4 +1,9 @@
 public interface InterestBearing {
-  
-    void applyMonthlyInterest();
+
+    /* Posts the interest earned up to the given time */
+    void applyMonthlyInterest(long epochMillis);
+
+    default void applyMonthlyInterest() {
+        applyMonthlyInterest(System.currentTimeMillis());
+    }
 }
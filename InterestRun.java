@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Month-end interest over every interest-bearing account, split into fork-join tasks.
+ *
+ * The accounts are halved until a slice is small enough to post sequentially. Each posting only
+ * takes its own account's lock, so slices never wait on one another; the one shared piece is a
+ * LongAdder counting postings, which other threads can read as progress while the run is going.
+ * BankController makes each run visible through getInterestRun before it starts.
+ */
+public class InterestRun {
+    private static final int SLICE_SIZE = 1024;
+
+    private final InterestBearing[] accounts;
+    private final long epochMillis;
+    private final LongAdder posted = new LongAdder();
+    private volatile long elapsedNanos;
+    private volatile boolean finished;
+
+    InterestRun(List<InterestBearing> accounts, long epochMillis) {
+        this.accounts = accounts.toArray(new InterestBearing[0]);
+        this.epochMillis = epochMillis;
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        ForkJoinPool.commonPool().invoke(new Slice(0, accounts.length));
+        elapsedNanos = System.nanoTime() - start;
+        finished = true;
+    }
+
+    /* The accounts this run posted to */
+    public List<InterestBearing> getAccounts() {
+        return Collections.unmodifiableList(Arrays.asList(accounts));
+    }
+
+    public int getTotal() {
+        return accounts.length;
+    }
+
+    public long getPosted() {
+        return posted.sum();
+    }
+
+    /* Fraction of the accounts done so far, 0 to 1 */
+    public double getProgress() {
+        return accounts.length == 0 ? 1 : posted.sum() / (double) accounts.length;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* Accounts per second over the whole run */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getPosted() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("interest posted to %,d of %,d accounts in %,d ms (%,.0f accounts/s)",
+                getPosted(), getTotal(), elapsedNanos / 1_000_000, getThroughput());
+    }
+
+    private final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+
+        Slice(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SLICE_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Slice(from, mid), new Slice(mid, to));
+                return;
+            }
+            int done = 0;
+            for (int i = from; i < to; i++) {
+                try {
+                    accounts[i].applyMonthlyInterest(epochMillis);
+                    done++;
+                } catch (RuntimeException e) { // one account out of range must not stop the run
+                    System.out.println("Interest warning: " + e.getMessage());
+                }
+            }
+            posted.add(done);
+        }
+    }
+}
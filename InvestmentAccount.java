@@ -1,21 +1,63 @@
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 public class InvestmentAccount extends Account implements InterestBearing {
-    private static final double MONTHLY_RATE = 0.00075; // 0.075 %
+    // 0.075 % a month, accrued daily: 0.9 % a year over 365 days, per cent-day of balance
+    private static final long DAILY_RATE_NUMERATOR = 9;
+    private static final long DAILY_RATE_DENOMINATOR = 365_000;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final AtomicLongFieldUpdater<InvestmentAccount> ACCRUAL_OFFSET =
+            AtomicLongFieldUpdater.newUpdater(InvestmentAccount.class, "accrualOffset");
+
+    // Interest accrues on balance-days (cents times days held) since the last posting. Up to day T
+    // that is balance * T - accrualOffset, where each change of delta cents on day d adds delta * d
+    // to the offset. The offset is a plain sum, so postings update it in any order and without a lock,
+    // and month-end only has to read it instead of going back over the history.
+    private volatile long accrualOffset;
 
-    public InvestmentAccount(String accountNumber, double balance, String branch, Customer owner) {
+    public InvestmentAccount(String accountNumber, long balance, String branch, Customer owner) {
         super(accountNumber, balance, branch, owner);
+        this.accrualOffset = Math.multiplyExact(balance, epochDay(System.currentTimeMillis()));
+    }
+
+    @Override
+    protected long afterWithdrawal(long current, long cents) {
+        if (cents <= 0 || cents > current) return REFUSED;
+        return current - cents;
     }
 
     @Override
-    public boolean withdraw(double amount) {
-        if (amount <= 0 || amount > balance) return false;
-        balance -= amount;
-        return true;
+    protected void balanceChanged(long delta, long epochMillis) {
+        ACCRUAL_OFFSET.addAndGet(this, Math.multiplyExact(delta, epochDay(epochMillis)));
+    }
+
+    /* Balance-days accrued up to the start of the given day */
+    long getAccruedCentDays(long epochDay) {
+        return Math.multiplyExact(balance, epochDay) - accrualOffset;
+    }
+
+    /* Restores an accrual saved as getAccruedCentDays(asOfDay), for the balance just loaded */
+    void restoreAccrual(long centDays, long asOfDay) {
+        accrualOffset = Math.multiplyExact(balance, asOfDay) - centDays;
+    }
+
+    static long epochDay(long epochMillis) {
+        return Math.floorDiv(epochMillis, MILLIS_PER_DAY);
     }
 
+    /* Posts what has accrued so far and starts a new accrual period */
     @Override
-    public void applyMonthlyInterest() {
-        double interest = balance * MONTHLY_RATE;
-        deposit(interest);
-        addTransaction(new Transaction("INTEREST", interest));
+    public void applyMonthlyInterest(long epochMillis) {
+        getLock().lock();
+        try {
+            long centDays = getAccruedCentDays(epochDay(epochMillis));
+            ACCRUAL_OFFSET.addAndGet(this, centDays); // nothing accrued as of today
+            // Rounded half-even to the cent, so repeated postings do not drift
+            long interest = Money.multiply(centDays, DAILY_RATE_NUMERATOR, DAILY_RATE_DENOMINATOR);
+            if (interest > 0) {
+                credit(TransactionType.INTEREST, interest, epochMillis);
+            }
+        } finally {
+            getLock().unlock();
+        }
     }
 }
\ No newline at end of file
@@ -25,8 +25,9 @@ public class Main extends Application {
 
     @Override
     public void stop() {
-        // Save data when application closes
+        // Save data when application closes, after whatever the views still had queued
         if (bankController != null) {
+            bankController.shutdown();
             bankController.saveData();
         }
     }
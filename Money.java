@@ -0,0 +1,104 @@
+/**
+ * Fixed-point money: amounts are plain longs counting cents.
+ *
+ * Everything here is static arithmetic on primitives, so balances and amounts never box or
+ * allocate. Doubles only appear at the edges, where a user typed an amount or a view wants one
+ * to display; parsing and formatting of stored amounts is exact and never goes through double.
+ */
+final class Money {
+    static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /* An amount entered as a double, rounded to the nearest cent */
+    static long ofDouble(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        double cents = Math.rint(amount * CENTS_PER_UNIT);
+        if (Math.abs(cents) >= Long.MAX_VALUE) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return (long) cents;
+    }
+
+    static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    /* value * numerator / denominator, rounded half-even as interest is posted */
+    static long multiply(long cents, long numerator, long denominator) {
+        return divideRounded(Math.multiplyExact(cents, numerator), denominator);
+    }
+
+    static long divideRounded(long value, long divisor) {
+        long q = Math.floorDiv(value, divisor);
+        long r = Math.floorMod(value, divisor);
+        long twice = 2 * r;
+        if (twice > divisor || (twice == divisor && (q & 1) != 0)) {
+            q++;
+        }
+        return q;
+    }
+
+    /* ---------- TEXT ---------- */
+    static long parse(String text) {
+        return parse(text, 0, text.length());
+    }
+
+    // Reads "-123", "123.4" or "123.45" straight from the characters; extra decimals are rounded half-even
+    static long parse(CharSequence text, int start, int end) {
+        if (start >= end) throw new NumberFormatException("Empty amount");
+        boolean negative = text.charAt(start) == '-';
+        int i = negative || text.charAt(start) == '+' ? start + 1 : start;
+        long units = 0, fraction = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false, sticky = false;
+        int firstDropped = -1;
+        if (i == end) throw new NumberFormatException("Invalid amount: " + text.subSequence(start, end));
+        for (; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (ch >= '0' && ch <= '9') {
+                if (!seenPoint) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), ch - '0');
+                } else if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (ch - '0');
+                    fractionDigits++;
+                } else if (firstDropped < 0) {
+                    firstDropped = ch - '0';
+                } else if (ch != '0') {
+                    sticky = true;
+                }
+            } else {
+                throw new NumberFormatException("Invalid amount: " + text.subSequence(start, end));
+            }
+        }
+        for (; fractionDigits < 2; fractionDigits++) {
+            fraction *= 10;
+        }
+        long cents = Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), fraction);
+        if (firstDropped > 5 || (firstDropped == 5 && (sticky || (cents & 1) != 0))) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    /* Two decimals, the same text the old %.2f wrote */
+    static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    static StringBuilder appendTo(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+        }
+        long abs = Math.abs(cents); // Long.MIN_VALUE is out of range for any balance
+        long fraction = abs % CENTS_PER_UNIT;
+        out.append(abs / CENTS_PER_UNIT).append('.');
+        if (fraction < 10) out.append('0');
+        return out.append(fraction);
+    }
+}
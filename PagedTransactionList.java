@@ -0,0 +1,138 @@
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A table's list of transactions that holds only the pages being looked at.
+ *
+ * Its size is the number of matching transactions, however many there are, and get fetches the
+ * page around a row the first time the table asks for it, keeping the most recently used pages.
+ * A table only asks for the rows it draws, so opening a history of any length costs one page.
+ * The account does the sorting: tables showing this list must not sort it themselves.
+ *
+ * Pages are fetched in the background, since the first read of a history loads it from disk. A row
+ * whose page has not arrived yet reads as null, and the rows are reported replaced when it does.
+ * Lists are built and changed on the FX thread only.
+ */
+final class PagedTransactionList extends ObservableListBase<Transaction> {
+    private static final int PAGE_SIZE = 200;
+    private static final int PAGES_KEPT = 16;
+
+    interface PageSource {
+        CompletableFuture<TransactionPage> fetch(TransactionPage.SortBy sortBy, boolean descending, int offset, int limit);
+    }
+
+    private final PageSource source;
+    final TransactionPage.SortBy sortBy;
+    final boolean descending;
+    private final Map<Integer, List<Transaction>> pages = new LinkedHashMap<>(PAGES_KEPT, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Transaction>> eldest) {
+            return size() > PAGES_KEPT;
+        }
+    };
+    private final Set<Integer> fetching = new HashSet<>();
+    private int size;
+    // Bumped when a refresh is applied, so pages asked for before it are dropped when they arrive
+    private int generation;
+    private int refreshes; // only the latest refresh asked for is applied
+
+    private PagedTransactionList(PageSource source, TransactionPage.SortBy sortBy, boolean descending, TransactionPage first) {
+        this.source = Objects.requireNonNull(source);
+        this.sortBy = sortBy;
+        this.descending = descending;
+        pages.put(0, first.getTransactions());
+        size = first.getTotal();
+    }
+
+    /* A list with its first page in, completed on the FX thread */
+    static CompletableFuture<PagedTransactionList> open(PageSource source, TransactionPage.SortBy sortBy, boolean descending) {
+        CompletableFuture<PagedTransactionList> opened = new CompletableFuture<>();
+        source.fetch(sortBy, descending, 0, PAGE_SIZE).whenComplete((first, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                opened.completeExceptionally(error);
+            } else {
+                opened.complete(new PagedTransactionList(source, sortBy, descending, first));
+            }
+        }));
+        return opened;
+    }
+
+    /* The same transactions in another order */
+    CompletableFuture<PagedTransactionList> reordered(TransactionPage.SortBy sortBy, boolean descending) {
+        return open(source, sortBy, descending);
+    }
+
+    @Override
+    public Transaction get(int index) {
+        Objects.checkIndex(index, size);
+        int page = index / PAGE_SIZE;
+        List<Transaction> rows = pages.get(page);
+        if (rows == null) {
+            fetchPage(page);
+            return null;
+        }
+        return index % PAGE_SIZE < rows.size() ? rows.get(index % PAGE_SIZE) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* Re-reads the count after the history changed and drops the pages fetched so far */
+    void refresh() {
+        int requested = ++refreshes;
+        source.fetch(sortBy, descending, 0, PAGE_SIZE).whenComplete((first, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.out.println("History warning: " + error.getMessage());
+            } else if (requested == refreshes) {
+                applyRefresh(first);
+            }
+        }));
+    }
+
+    private void applyRefresh(TransactionPage first) {
+        int oldSize = size;
+        generation++;
+        pages.clear();
+        fetching.clear();
+        pages.put(0, first.getTransactions());
+        size = first.getTotal();
+        if (size > oldSize) {
+            // Histories only grow, but the new rows can land anywhere: by amount or type, and in time
+            // order too when one is backdated. So every row is reported replaced and the table redraws
+            beginChange();
+            nextReplace(0, size, Collections.nCopies(oldSize, null));
+            endChange();
+        }
+    }
+
+    private void fetchPage(int page) {
+        if (!fetching.add(page)) return;
+        int fetchedFor = generation;
+        source.fetch(sortBy, descending, page * PAGE_SIZE, PAGE_SIZE).whenComplete((fetched, error) -> Platform.runLater(() -> {
+            if (fetchedFor != generation) return;
+            fetching.remove(page);
+            if (error != null) {
+                System.out.println("History warning: " + error.getMessage());
+                return;
+            }
+            pages.put(page, fetched.getTransactions());
+            int from = page * PAGE_SIZE;
+            int to = Math.min(size, from + PAGE_SIZE);
+            if (from < to) {
+                beginChange();
+                nextReplace(from, to, Collections.nCopies(to - from, null));
+                endChange();
+            }
+        }));
+    }
+}
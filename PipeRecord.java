@@ -0,0 +1,118 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Reusable cursor over one pipe-delimited line.
+ * Field boundaries are kept as offsets into the line, so splitting a row needs no regex
+ * and no String[]; only the fields that are actually read get turned into Strings.
+ */
+final class PipeRecord {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private String line;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int size;
+
+    PipeRecord reset(String line) {
+        this.line = line;
+        size = 0;
+        int start = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == '|') {
+                if (size == starts.length) {
+                    starts = Arrays.copyOf(starts, size * 2);
+                    ends = Arrays.copyOf(ends, size * 2);
+                }
+                starts[size] = start;
+                ends[size] = i;
+                size++;
+                start = i + 1;
+            }
+        }
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String get(int field) {
+        return line.substring(starts[field], ends[field]);
+    }
+
+    boolean startsWith(int field, String prefix) {
+        return ends[field] - starts[field] >= prefix.length()
+                && line.startsWith(prefix, starts[field]);
+    }
+
+    boolean fieldEquals(int field, String value) {
+        return ends[field] - starts[field] == value.length()
+                && line.startsWith(value, starts[field]);
+    }
+
+    /* A field written with escape, with its escapes undone */
+    String getText(int field) {
+        int from = starts[field], to = ends[field];
+        int slash = line.indexOf('\\', from);
+        if (slash < 0 || slash >= to) return line.substring(from, to);
+        StringBuilder text = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < to) {
+                c = line.charAt(++i);
+                c = c == 'p' ? '|' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    /* Free text made safe for one field: no pipe or line break is left to split the record */
+    static String escape(String text) {
+        StringBuilder out = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String escaped = c == '\\' ? "\\\\" : c == '|' ? "\\p" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+            if (escaped != null && out == null) {
+                out = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            if (out != null) {
+                if (escaped != null) out.append(escaped); else out.append(c);
+            }
+        }
+        return out == null ? text : out.toString();
+    }
+
+    double getDouble(int field) {
+        return Double.parseDouble(get(field));
+    }
+
+    // A transaction type stored as its one-character code, or by name in older files
+    TransactionType getTransactionType(int field) {
+        return ends[field] - starts[field] == 1
+                ? TransactionType.fromCode(line.charAt(starts[field]))
+                : TransactionType.valueOf(get(field));
+    }
+
+    // Amount in cents, parsed exactly and in place
+    long getMoney(int field) {
+        return Money.parse(line, starts[field], ends[field]);
+    }
+
+    // Parsed in place, without a substring
+    long getLong(int field) {
+        return Long.parseLong(line, starts[field], ends[field], 10);
+    }
+
+    /* Large buffered reader so files are streamed in chunks rather than read whole */
+    static BufferedReader open(Path path) throws IOException {
+        return open(Files.newInputStream(path));
+    }
+
+    static BufferedReader open(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+    }
+}
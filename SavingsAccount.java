@@ -1,22 +1,22 @@
 public class SavingsAccount extends Account {
-    private static final double MIN_INITIAL_DEPOSIT = 1000.0;
+    private static final long MIN_INITIAL_DEPOSIT = 1000 * Money.CENTS_PER_UNIT;
 
-    public SavingsAccount(String accountNumber, double balance, String branch, Customer owner) {
+    public SavingsAccount(String accountNumber, long balance, String branch, Customer owner) {
         super(accountNumber, balance, branch, owner);
     }
 
     @Override
-    public boolean withdraw(double amount) {
+    protected long afterWithdrawal(long current, long cents) {
         // Completely prevent withdrawals from savings accounts
-        return false;
+        return REFUSED;
     }
 
     @Override
-    public void deposit(double amount) {
+    protected long afterDeposit(long current, long cents) {
         // Backup validation
-        if (balance == 0 && amount < MIN_INITIAL_DEPOSIT) {
+        if (current == 0 && cents < MIN_INITIAL_DEPOSIT) {
             throw new IllegalArgumentException("Minimum initial deposit for Savings Account is $1000");
         }
-        balance += amount;
+        return Math.addExact(current, cents);
     }
 }
\ No newline at end of file
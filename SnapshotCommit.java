@@ -0,0 +1,98 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Makes a snapshot spread over several files all-or-nothing.
+ *
+ * Files are first written next to their targets as *.tmp and forced to disk. The commit point
+ * is the atomic creation of checkpoint.pending, which names the log sequence number the
+ * snapshot covers and every staged file. Only then are the staged files moved over their
+ * targets and the marker renamed to checkpoint.lsn. If the process dies part way through,
+ * recover() finishes the moves on the next start; a crash before the marker exists simply
+ * leaves the previous snapshot in place.
+ *
+ * Each backend keeps its markers in its own directory, so writing one backend's files never
+ * moves the point another backend replays the log from.
+ */
+final class SnapshotCommit {
+    private final Path pendingFile;
+    private final Path lsnFile;
+    private final List<Path> targets = new ArrayList<>();
+
+    SnapshotCommit(Path markerDir) {
+        this.pendingFile = markerDir.resolve("checkpoint.pending");
+        this.lsnFile = markerDir.resolve("checkpoint.lsn");
+    }
+
+    /* Returns the temp path the caller should write in place of target */
+    Path stage(Path target) {
+        targets.add(target);
+        return staged(target);
+    }
+
+    void commit(long lsn) throws IOException {
+        for (Path target : targets) {
+            try (FileChannel ch = FileChannel.open(staged(target), StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+        }
+
+        List<String> marker = new ArrayList<>();
+        marker.add(Long.toString(lsn));
+        targets.forEach(t -> marker.add(t.toString()));
+        Path markerTmp = staged(pendingFile);
+        Files.write(markerTmp, marker, StandardCharsets.UTF_8);
+        try (FileChannel ch = FileChannel.open(markerTmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(markerTmp, pendingFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        finish();
+    }
+
+    /* ---------- RECOVERY ---------- */
+    void recover() {
+        if (!Files.exists(pendingFile)) return;
+        try {
+            finish();
+            System.out.println("Recovered an interrupted checkpoint");
+        } catch (IOException e) {
+            System.out.println("Recovery warning: " + e.getMessage());
+        }
+    }
+
+    boolean hasCheckpoint() {
+        return Files.exists(lsnFile);
+    }
+
+    /* Log sequence number covered by the last committed snapshot, 0 if there is none */
+    long checkpointLsn() {
+        try {
+            if (!Files.exists(lsnFile)) return 0;
+            return Long.parseLong(Files.readAllLines(lsnFile, StandardCharsets.UTF_8).get(0).trim());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Recovery warning: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Idempotent: a staged file that is already gone was moved before the crash
+    private void finish() throws IOException {
+        List<String> marker = Files.readAllLines(pendingFile, StandardCharsets.UTF_8);
+        for (String target : marker.subList(1, marker.size())) {
+            Path tmp = staged(Paths.get(target));
+            if (Files.exists(tmp)) {
+                Files.move(tmp, Paths.get(target), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.write(lsnFile, marker.subList(0, 1), StandardCharsets.UTF_8);
+        Files.delete(pendingFile);
+    }
+
+    private static Path staged(Path target) {
+        return Paths.get(target + ".tmp");
+    }
+}
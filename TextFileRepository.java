@@ -1,91 +1,133 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
 
-public class TextFileRepository {
+public class TextFileRepository implements BankRepository {
     private static final String CUST_FILE = "customers.txt";
     private static final String ACC_FILE  = "accounts.txt";
     private static final String TXN_FILE  = "transactions.txt";
+    private static final Path MARKER_DIR = Paths.get("");
+
+    @Override
+    public boolean hasData() {
+        return Files.exists(Paths.get(CUST_FILE));
+    }
+
+    @Override
+    public void recover() {
+        new SnapshotCommit(MARKER_DIR).recover();
+    }
+
+    @Override
+    public long checkpointLsn() {
+        return new SnapshotCommit(MARKER_DIR).checkpointLsn();
+    }
 
     /* ---------- LOAD ---------- */
-    static void load(Bank bank) {
+    @Override
+    public void load(Bank bank) {
         if (!Files.exists(Paths.get(CUST_FILE))) return;
 
+        // One cursor is reused for every row of every file
+        PipeRecord p = new PipeRecord();
+        String line;
+
         try {
             /* 1. customers */
-            List<String> lines = Files.readAllLines(Paths.get(CUST_FILE));
-            for (String line : lines) {
-                String[] p = line.split("\\|", -1);
-                if (p[0].startsWith("IND")) {
-                    // Individual customer: ID|firstName|surname|address|branch
-                    if (p.length >= 5) {
-                        bank.addIndividualCustomer(p[1], p[2], p[3], p[4]);
-                    } else if (p.length >= 4) {
-                        // For backward compatibility
-                        bank.addIndividualCustomer(p[1], p[2], p[3], "Main Branch");
-                    }
-                } else if (p[0].startsWith("CMP")) {
-                    // Company customer: ID|companyName|address|cellNumber|branch
-                    if (p.length >= 5) {
-                        bank.addCompanyCustomer(p[1], p[2], p[3], p[4]);
-                    } else if (p.length >= 4) {
-                        // For backward compatibility
-                        bank.addCompanyCustomer(p[1], p[2], p[3], "Main Branch");
+            try (BufferedReader in = PipeRecord.open(Paths.get(CUST_FILE))) {
+                while ((line = in.readLine()) != null) {
+                    p.reset(line);
+                    if (p.startsWith(0, "IND")) {
+                        // Individual customer: ID|firstName|surname|address|branch
+                        if (p.size() >= 5) {
+                            bank.addIndividualCustomer(p.get(1), p.get(2), p.get(3), p.get(4));
+                        } else if (p.size() >= 4) {
+                            // For backward compatibility
+                            bank.addIndividualCustomer(p.get(1), p.get(2), p.get(3), "Main Branch");
+                        }
+                    } else if (p.startsWith(0, "CMP")) {
+                        // Company customer: ID|companyName|address|cellNumber|branch
+                        if (p.size() >= 5) {
+                            bank.addCompanyCustomer(p.get(1), p.get(2), p.get(3), p.get(4));
+                        } else if (p.size() >= 4) {
+                            // For backward compatibility
+                            bank.addCompanyCustomer(p.get(1), p.get(2), p.get(3), "Main Branch");
+                        }
                     }
                 }
             }
 
             /* 2. accounts */
             if (Files.exists(Paths.get(ACC_FILE))) {
-                lines = Files.readAllLines(Paths.get(ACC_FILE));
-                for (String line : lines) {
-                    String[] p = line.split("\\|", -1);
-                    Customer owner = bank.findCustomerById(p[1]);
-                    if (owner == null) continue;
-
-                    String type   = p[2];
-                    String accNo  = p[0];
-                    double bal    = Double.parseDouble(p[3]);
-                    String branch = p[4];
-
-                    switch (type) {
-                        case "SavingsAccount":
+                try (BufferedReader in = PipeRecord.open(Paths.get(ACC_FILE))) {
+                    while ((line = in.readLine()) != null) {
+                        p.reset(line);
+                        if (p.size() < 5) continue;
+                        Customer owner = bank.findCustomerById(p.get(1));
+                        if (owner == null) continue;
+
+                        // Exact cents; openAccount takes the amount as entered, which round-trips exactly
+                        double bal    = Money.toDouble(p.getMoney(3));
+                        String branch = p.get(4);
+
+                        if (p.fieldEquals(2, "SavingsAccount")) {
                             // Ensure minimum deposit for savings accounts
                             double actualDeposit = Math.max(bal, 1000.0); // Enforce $1000 minimum
                             owner.openAccount("savings", actualDeposit, branch);
-                            break;
-                        case "InvestmentAccount":
+                        } else if (p.fieldEquals(2, "InvestmentAccount")) {
                             owner.openAccount("investment", bal, branch);
-                            break;
-                        case "ChequeAccount":
-                            if (p.length < 7) continue;
-                            owner.openAccount("cheque", bal, branch, p[5], p[6]);
-                            break;
+                            if (p.size() >= 7) { // older files carry no accrual, which then starts on load
+                                List<Account> opened = owner.getAccounts();
+                                ((InvestmentAccount) opened.get(opened.size() - 1)).restoreAccrual(p.getLong(5), p.getLong(6));
+                            }
+                        } else if (p.fieldEquals(2, "ChequeAccount")) {
+                            if (p.size() < 7) continue;
+                            owner.openAccount("cheque", bal, branch, p.get(5), p.get(6));
+                        }
                     }
                 }
             }
 
-            /* 3. transactions */
+            /* 3. transactions - only indexed here, each account reads its own lines on first use */
             if (Files.exists(Paths.get(TXN_FILE))) {
-                lines = Files.readAllLines(Paths.get(TXN_FILE));
-                for (String line : lines) {
-                    String[] p = line.split("\\|", -1);
-                    Account acc = bank.findAccountByNumber(p[0]);
+                for (Map.Entry<String, FileHistory> e : indexTransactions(Paths.get(TXN_FILE)).entrySet()) {
+                    Account acc = bank.findAccountByNumber(e.getKey());
                     if (acc == null) continue;
-                    acc.addTransaction(new Transaction(p[1], Double.parseDouble(p[2])));
+                    acc.deferHistory(e.getValue());
                 }
             }
 
-        } catch (IOException e) {
+        } catch (IOException | NumberFormatException e) {
             System.out.println("Load warning: " + e.getMessage());
         }
     }
 
     /* ---------- SAVE ---------- */
-    static void save(Bank bank) {
-        try (PrintWriter cw = new PrintWriter(CUST_FILE);
-             PrintWriter aw = new PrintWriter(ACC_FILE);
-             PrintWriter tw = new PrintWriter(TXN_FILE)) {
+    /* Writes all three files as one atomic snapshot covering the log up to lsn */
+    @Override
+    public boolean save(Bank bank, long lsn) {
+        // Where each still-unloaded history lands in the new transactions file. These accounts stay
+        // locked until they point there, so a lazy load never reads a history half way through
+        Map<Account, long[]> deferred = new LinkedHashMap<>();
+        try {
+            return save(bank, lsn, deferred);
+        } finally {
+            deferred.keySet().forEach(a -> a.getLock().unlock());
+        }
+    }
+
+    private boolean save(Bank bank, long lsn, Map<Account, long[]> deferred) {
+        SnapshotCommit commit = new SnapshotCommit(MARKER_DIR);
+        CountingOutputStream txnBytes;
+        try (PrintWriter cw = new PrintWriter(Files.newBufferedWriter(commit.stage(Paths.get(CUST_FILE))));
+             PrintWriter aw = new PrintWriter(Files.newBufferedWriter(commit.stage(Paths.get(ACC_FILE))));
+             PrintWriter tw = new PrintWriter(new OutputStreamWriter(txnBytes = new CountingOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(commit.stage(Paths.get(TXN_FILE))))),
+                     StandardCharsets.UTF_8))) {
 
             /* customers */
             for (Customer c : bank.getCustomers()) {
@@ -103,30 +145,270 @@ public class TextFileRepository {
             }
 
             /* accounts */
+            long today = InvestmentAccount.epochDay(System.currentTimeMillis());
             for (Customer c : bank.getCustomers()) {
                 for (Account a : c.getAccounts()) {
-                    aw.printf("%s|%s|%s|%.2f|%s",
+                    aw.printf("%s|%s|%s|%s|%s",
                             a.getAccountNumber(), c.getCustomerId(),
-                            a.getClass().getSimpleName(), a.getBalance(), a.branch);
+                            a.getClass().getSimpleName(), Money.format(a.getBalanceCents()), a.branch);
                     if (a instanceof ChequeAccount) {
                         ChequeAccount ch = (ChequeAccount) a;
                         aw.printf("|%s|%s", ch.getEmployer(), ch.getCompanyAddress());
+                    } else if (a instanceof InvestmentAccount) {
+                        // Save: ...|accrued cent-days|as of epoch day
+                        aw.printf("|%d|%d", ((InvestmentAccount) a).getAccruedCentDays(today), today);
                     }
                     aw.println();
                 }
             }
 
-            /* transactions */
+            /* transactions - histories never read this session are copied over line for line */
+            StringBuilder line = new StringBuilder(64);
             for (Customer c : bank.getCustomers()) {
                 for (Account a : c.getAccounts()) {
-                    for (Transaction t : a.getTransactions()) {
-                        tw.printf("%s|%s|%.2f%n", a.getAccountNumber(), t.type, t.amount);
+                    a.getLock().lock();
+                    if (a.getHistoryLoader() instanceof FileHistory) {
+                        long[] range = new long[2];
+                        deferred.put(a, range);
+                        tw.flush();
+                        range[0] = txnBytes.count;
+                        ((FileHistory) a.getHistoryLoader()).copyTo(tw);
+                        writeTransactions(tw, a, a.getUnloadedTail(), line);
+                        tw.flush();
+                        range[1] = txnBytes.count;
+                    } else {
+                        try {
+                            writeTransactions(tw, a, a.getLedger(), line);
+                        } finally {
+                            a.getLock().unlock();
+                        }
                     }
                 }
             }
 
+            if (cw.checkError() || aw.checkError() || tw.checkError()) {
+                throw new IOException("write failed");
+            }
         } catch (IOException e) {
             System.out.println("Save error: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            commit.commit(lsn);
+            // The old file is gone, so point the unloaded histories at their new location
+            deferred.forEach((a, range) ->
+                    a.deferHistory(new FileHistory(Paths.get(TXN_FILE), range[0], range[1])));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Save error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Save: account|typeCode|amount|epochMillis, built straight from the ledger columns in one reused buffer
+    private static void writeTransactions(PrintWriter tw, Account a, TransactionLedger ledger, StringBuilder line) {
+        for (int i = 0; i < ledger.size(); i++) {
+            line.setLength(0);
+            line.append(a.getAccountNumber()).append('|').append(ledger.typeAt(i).getCode()).append('|');
+            Money.appendTo(line, ledger.amountAt(i)).append('|').append(ledger.timeAt(i));
+            tw.append(line).println();
+        }
+    }
+
+    /* ---------- TRANSACTION INDEX ---------- */
+    /* One pass over the raw bytes, recording where each account's lines are; no Transactions are built */
+    private static Map<String, FileHistory> indexTransactions(Path file) throws IOException {
+        TransactionIndexer indexer = new TransactionIndexer(file);
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    indexer.accept(buf[i]);
+                }
+            }
+        }
+        indexer.endLine(); // a last line without newline still counts
+        return indexer.index;
+    }
+
+    private static final class TransactionIndexer {
+        final Map<String, FileHistory> index = new HashMap<>();
+        private final Path file;
+        private byte[] key = new byte[64];  // account number of the current line
+        private int keyLen;
+        private boolean inKey = true;
+        private long offset, lineStart;
+        private FileHistory run;            // history of the account on the previous line
+        private byte[] runKey = new byte[0];
+
+        TransactionIndexer(Path file) {
+            this.file = file;
+        }
+
+        void accept(byte b) {
+            offset++;
+            if (b == '\n') {
+                endLine();
+            } else if (inKey) {
+                if (b == '|') {
+                    inKey = false;
+                } else {
+                    if (keyLen == key.length) key = Arrays.copyOf(key, keyLen * 2);
+                    key[keyLen++] = b;
+                }
+            }
+        }
+
+        void endLine() {
+            if (keyLen > 0 && !inKey) {
+                // Only a change of account costs an allocation
+                if (run == null || !Arrays.equals(key, 0, keyLen, runKey, 0, runKey.length)) {
+                    runKey = Arrays.copyOf(key, keyLen);
+                    run = index.computeIfAbsent(new String(runKey, StandardCharsets.UTF_8),
+                            k -> new FileHistory(file));
+                }
+                run.addRange(lineStart, offset);
+            }
+            lineStart = offset;
+            keyLen = 0;
+            inKey = true;
+        }
+    }
+
+    /* An account's lines in the transactions file, as byte ranges */
+    private static final class FileHistory implements HistoryLoader {
+        private final Path file;
+        private long[] ranges = new long[2];
+        private int rangeCount;
+
+        FileHistory(Path file) {
+            this.file = file;
+        }
+
+        FileHistory(Path file, long start, long end) {
+            this(file);
+            addRange(start, end);
+        }
+
+        // Adjacent lines, the normal case since saves group them per account, extend one range
+        void addRange(long start, long end) {
+            if (rangeCount > 0 && ranges[rangeCount * 2 - 1] == start) {
+                ranges[rangeCount * 2 - 1] = end;
+                return;
+            }
+            if (rangeCount * 2 == ranges.length) ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            ranges[rangeCount * 2] = start;
+            ranges[rangeCount * 2 + 1] = end;
+            rangeCount++;
+        }
+
+        // Each range is streamed through the same buffered line reader the full load uses
+        void forEachLine(Consumer<String> action) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int r = 0; r < rangeCount; r++) {
+                    ch.position(ranges[r * 2]);
+                    BufferedReader in = PipeRecord.open(new RangeInputStream(
+                            Channels.newInputStream(ch), ranges[r * 2 + 1] - ranges[r * 2]));
+                    for (String line; (line = in.readLine()) != null; ) {
+                        if (!line.isEmpty()) action.accept(line);
+                    }
+                }
+            }
+        }
+
+        // Lines written before timestamps were saved only date back to the file itself
+        private long legacyTime() throws IOException {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+
+        /* Raw copy into a new transactions file, stamping legacy lines so they keep their time */
+        void copyTo(PrintWriter out) throws IOException {
+            long fileTime = legacyTime();
+            PipeRecord p = new PipeRecord();
+            forEachLine(line -> {
+                if (p.reset(line).size() == 3) {
+                    out.println(line + "|" + fileTime);
+                } else {
+                    out.println(line);
+                }
+            });
+        }
+
+        @Override
+        public void loadInto(TransactionLedger history) throws IOException {
+            long fileTime = legacyTime();
+            PipeRecord p = new PipeRecord();
+            forEachLine(line -> {
+                p.reset(line);
+                if (p.size() >= 4) {
+                    history.add(p.getTransactionType(1), p.getMoney(2), p.getLong(3));
+                } else if (p.size() >= 3) {
+                    history.add(p.getTransactionType(1), p.getMoney(2), fileTime);
+                }
+            });
+        }
+    }
+
+    /* The next length bytes of a stream; closing it leaves the stream underneath open */
+    private static final class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /* Counts bytes on their way to the file so saved histories can be indexed without a rescan */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        // Only used to drain the writer above for an exact count; the buffer below keeps its data
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
         }
     }
 
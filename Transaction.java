@@ -1,39 +1,54 @@
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 public class Transaction implements Serializable {
     private static final long serialVersionUID = 1L;
-    final String type;
-    final double amount;
-    private final LocalDateTime timestamp;
+    final TransactionType type;
+    final long amount; // cents, see Money
+    // Milliseconds since the epoch; persisted as is so loading never has to parse a date
+    private final long epochMillis;
 
-    public Transaction(String type, double amount) {
+    public Transaction(TransactionType type, long amount) {
+        this(type, amount, System.currentTimeMillis());
+    }
+
+    public Transaction(TransactionType type, long amount, long epochMillis) {
         this.type = type;
         this.amount = amount;
-        this.timestamp = LocalDateTime.now();
+        this.epochMillis = epochMillis;
     }
 
     // GETTER METHODS - TableView needs these
-    public String getType() {
+    public TransactionType getType() {
         return type;
     }
 
     public double getAmount() {
+        return Money.toDouble(amount);
+    }
+
+    public long getAmountCents() {
         return amount;
     }
 
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
     }
 
     // Helper method to get formatted date string
     public String getFormattedTimestamp() {
-        return timestamp.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
     @Override
     public String toString() {
-        return getFormattedTimestamp() + " | " + type + " | " + amount;
+        return getFormattedTimestamp() + " | " + type + " | " + Money.format(amount);
     }
-}
\ No newline at end of file
+}
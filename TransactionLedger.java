@@ -0,0 +1,218 @@
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * An account's transactions stored column-wise: amounts, timestamps and types (as enum ordinals)
+ * each live in their own growable primitive array, kept in time order.
+ *
+ * One entry costs 17 bytes instead of a Transaction object with its own fields and header, and
+ * scans over one column (sums, time searches, type filters) walk contiguous memory. As a
+ * List<Transaction> it is a read view: get(i) builds the Transaction for that row on demand.
+ */
+final class TransactionLedger extends AbstractList<Transaction> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int size;
+    // First row added since markStored, where an incremental save starts writing
+    private transient int changedFrom;
+
+    // The last range sorted by something other than time, kept until the ledger changes
+    private transient int[] sortedRows;
+    private transient int sortedFrom, sortedTo, sortedMod;
+    private transient TransactionPage.SortBy sortedBy;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        Objects.checkIndex(index, size);
+        return new Transaction(TransactionType.ofOrdinal(types[index]), amounts[index], times[index]);
+    }
+
+    /* ----- column access, without building Transactions ----- */
+    long amountAt(int index) {
+        Objects.checkIndex(index, size);
+        return amounts[index];
+    }
+
+    long timeAt(int index) {
+        Objects.checkIndex(index, size);
+        return times[index];
+    }
+
+    TransactionType typeAt(int index) {
+        Objects.checkIndex(index, size);
+        return TransactionType.ofOrdinal(types[index]);
+    }
+
+    /* Total amount per type in one pass, indexed by TransactionType ordinal */
+    long[] totalsByType() {
+        long[] totals = new long[TransactionType.count()];
+        for (int i = 0; i < size; i++) {
+            totals[types[i]] += amounts[i];
+        }
+        return totals;
+    }
+
+    long sumOf(TransactionType type) {
+        byte code = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == code) sum += amounts[i];
+        }
+        return sum;
+    }
+
+    /* ----- appending ----- */
+    @Override
+    public boolean add(Transaction t) {
+        add(t.type, t.amount, t.getEpochMillis());
+        return true;
+    }
+
+    void add(TransactionType type, long amount, long epochMillis) {
+        // Normally the newest one; an older timestamp (replay, clock change) is inserted in place
+        int at = size;
+        if (at > 0 && times[at - 1] > epochMillis) {
+            at = lowerBound(epochMillis + 1);
+        }
+        if (size == times.length) {
+            int capacity = size + (size >> 1);
+            amounts = Arrays.copyOf(amounts, capacity);
+            times = Arrays.copyOf(times, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        if (at < size) {
+            System.arraycopy(amounts, at, amounts, at + 1, size - at);
+            System.arraycopy(times, at, times, at + 1, size - at);
+            System.arraycopy(types, at, types, at + 1, size - at);
+        }
+        amounts[at] = amount;
+        times[at] = epochMillis;
+        types[at] = (byte) type.ordinal();
+        size++;
+        changedFrom = Math.min(changedFrom, at);
+        modCount++;
+    }
+
+    /* The first row inserted or appended since the last markStored, or size() if none */
+    int changedFrom() {
+        return changedFrom;
+    }
+
+    /* Marks every row as written by a save */
+    void markStored() {
+        changedFrom = size;
+    }
+
+    void addAll(TransactionLedger other) {
+        for (int i = 0; i < other.size; i++) {
+            add(TransactionType.ofOrdinal(other.types[i]), other.amounts[i], other.times[i]);
+        }
+    }
+
+    /* Rows from (inclusive) to to (exclusive) as a new ledger; three array copies */
+    TransactionLedger copy(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        TransactionLedger copy = new TransactionLedger();
+        int length = Math.max(to - from, INITIAL_CAPACITY);
+        copy.amounts = Arrays.copyOfRange(amounts, from, from + length);
+        copy.times = Arrays.copyOfRange(times, from, from + length);
+        copy.types = Arrays.copyOfRange(types, from, from + length);
+        copy.size = to - from;
+        return copy;
+    }
+
+    /* ----- paging ----- */
+
+    /* Rows offset to offset + limit of [from, to) in the given order */
+    TransactionPage page(int from, int to, TransactionPage.SortBy sortBy, boolean descending, int offset, int limit) {
+        Objects.checkFromToIndex(from, to, size);
+        int total = to - from;
+        int first = Math.min(Math.max(offset, 0), total);
+        int count = Math.min(Math.max(limit, 0), total - first);
+        int[] order = sortBy == TransactionPage.SortBy.TIME ? null : sortedRows(from, to, sortBy);
+        Transaction[] rows = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            int k = descending ? total - 1 - (first + i) : first + i;
+            rows[i] = get(order == null ? from + k : order[k]);
+        }
+        return new TransactionPage(List.of(rows), first, total, Long.MIN_VALUE);
+    }
+
+    /* Newest first, up to limit rows older than beforeMillis, plus any more from the oldest row's millisecond */
+    TransactionPage pageBefore(long beforeMillis, int limit) {
+        int end = lowerBound(beforeMillis);
+        int start = Math.max(0, end - Math.max(limit, 1));
+        // A millisecond is never split between pages, so the next page can start strictly before it
+        while (start > 0 && times[start - 1] == times[start]) start--;
+        Transaction[] rows = new Transaction[end - start];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = get(end - 1 - i);
+        }
+        long nextBefore = start > 0 ? times[start] : Long.MIN_VALUE;
+        return new TransactionPage(List.of(rows), size - end, size, nextBefore);
+    }
+
+    // Row indexes of [from, to) ordered by amount or type, ties in time order
+    private int[] sortedRows(int from, int to, TransactionPage.SortBy sortBy) {
+        if (sortedRows != null && sortedFrom == from && sortedTo == to && sortedBy == sortBy && sortedMod == modCount) {
+            return sortedRows;
+        }
+        int[] order = new int[to - from];
+        if (sortBy == TransactionPage.SortBy.TYPE) {
+            // Counting sort on the type column: two passes, already stable
+            int[] starts = new int[TransactionType.count() + 1];
+            for (int i = from; i < to; i++) starts[types[i] + 1]++;
+            for (int t = 1; t < starts.length; t++) starts[t] += starts[t - 1];
+            for (int i = from; i < to; i++) order[starts[types[i]]++] = i;
+        } else {
+            // Radix sort on the amount column, a byte per pass from the lowest; stable, and a byte
+            // every amount shares (the high ones, mostly) is skipped
+            for (int i = 0; i < order.length; i++) order[i] = from + i;
+            int[] buffer = new int[order.length];
+            for (int shift = 0; shift < 64 && order.length > 0; shift += 8) {
+                int[] starts = new int[257];
+                for (int row : order) starts[amountByte(row, shift) + 1]++;
+                if (starts[amountByte(order[0], shift) + 1] == order.length) continue;
+                for (int b = 1; b < starts.length; b++) starts[b] += starts[b - 1];
+                for (int row : order) buffer[starts[amountByte(row, shift)]++] = row;
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+        }
+        sortedRows = order;
+        sortedFrom = from;
+        sortedTo = to;
+        sortedBy = sortBy;
+        sortedMod = modCount;
+        return order;
+    }
+
+    // Flipping the sign bit puts negative amounts first
+    private int amountByte(int row, int shift) {
+        return (int) (((amounts[row] ^ Long.MIN_VALUE) >>> shift) & 0xFF);
+    }
+
+    /* First index whose timestamp is >= millis */
+    int lowerBound(long millis) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * One page of an account's history, cut and sorted by the account so a caller only ever holds
+ * the rows it shows.
+ *
+ * Pages come two ways: by offset and limit into a sorted date range, for views that jump around
+ * a long history, or by keyset, newest first, where each page says where the next one starts.
+ */
+public final class TransactionPage {
+    public enum SortBy { TIME, AMOUNT, TYPE }
+
+    static final TransactionPage EMPTY = new TransactionPage(List.of(), 0, 0, Long.MIN_VALUE);
+
+    private final List<Transaction> transactions;
+    private final int offset;
+    private final int total;
+    private final long nextBefore;
+
+    TransactionPage(List<Transaction> transactions, int offset, int total, long nextBefore) {
+        this.transactions = transactions;
+        this.offset = offset;
+        this.total = total;
+        this.nextBefore = nextBefore;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /* Position of the first transaction on this page among all the matching ones */
+    public int getOffset() {
+        return offset;
+    }
+
+    /* How many transactions match, over all pages */
+    public int getTotal() {
+        return total;
+    }
+
+    public boolean hasMore() {
+        return offset + transactions.size() < total;
+    }
+
+    /* For keyset pages: the beforeMillis that fetches the next, older page */
+    public long getNextBefore() {
+        return nextBefore;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * The closed set of transaction types.
+ * Each has a one-character code, which is what the transaction files store.
+ */
+public enum TransactionType {
+    DEPOSIT('D'),
+    WITHDRAW('W'),
+    INTEREST('I'),
+    BALANCE_CHECK('B'),
+    TRANSFER_OUT('O'),
+    TRANSFER_IN('T');
+
+    private static final TransactionType[] VALUES = values();
+    private static final TransactionType[] BY_CODE = new TransactionType[128];
+
+    static {
+        for (TransactionType type : VALUES) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final char code;
+
+    TransactionType(char code) {
+        this.code = code;
+    }
+
+    public char getCode() {
+        return code;
+    }
+
+    static TransactionType ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    static TransactionType fromCode(char code) {
+        TransactionType type = code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) throw new IllegalArgumentException("Unknown transaction code: " + code);
+        return type;
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+}
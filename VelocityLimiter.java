@@ -0,0 +1,139 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling-window withdrawal limits, per account and per customer.
+ *
+ * Each window is a ring of time buckets holding the amount and number of withdrawals in that
+ * slice of time, plus running totals over the whole ring. A check moves the ring past expired
+ * buckets and compares the totals, so its cost does not depend on how many withdrawals the
+ * window holds, and the transaction history is never read.
+ *
+ * Limits can be set as -Dbank.limit.<name>=amount,count, e.g. -Dbank.limit.accountHour=5000,10
+ */
+final class VelocityLimiter {
+    private static final long MINUTE = 60_000L;
+
+    private static final Limit ACCOUNT_HOUR = Limit.of("accountHour", "hourly", 10_000, 20, MINUTE, 60);
+    private static final Limit ACCOUNT_DAY  = Limit.of("accountDay", "daily", 50_000, 100, 10 * MINUTE, 144);
+    private static final Limit CUSTOMER_DAY = Limit.of("customerDay", "daily customer", 100_000, 200, 10 * MINUTE, 144);
+
+    // An account's windows: its own hour and day, then its owner's day, which all the owner's accounts share
+    private final ConcurrentHashMap<String, Window[]> byAccount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> byCustomer = new ConcurrentHashMap<>();
+
+    /* Counts the withdrawal against every window it falls in, or returns the limit it would break */
+    String tryReserve(Account account, long cents, long now) {
+        Window[] windows = windowsFor(account);
+        for (int i = 0; i < windows.length; i++) {
+            if (!windows[i].tryAdd(cents, now)) {
+                for (int j = 0; j < i; j++) {
+                    windows[j].remove(cents, now);
+                }
+                return "This withdrawal would exceed the " + windows[i].limit.label + " withdrawal limit of $"
+                        + Money.format(windows[i].limit.maxCents) + " or " + windows[i].limit.maxCount + " withdrawals";
+            }
+        }
+        return null;
+    }
+
+    /* Takes back a reservation whose withdrawal did not go through */
+    void release(Account account, long cents, long now) {
+        for (Window w : windowsFor(account)) {
+            w.remove(cents, now);
+        }
+    }
+
+    private Window[] windowsFor(Account account) {
+        return byAccount.computeIfAbsent(account.getAccountNumber(), k -> new Window[]{
+                new Window(ACCOUNT_HOUR),
+                new Window(ACCOUNT_DAY),
+                byCustomer.computeIfAbsent(account.owner.getCustomerId(), id -> new Window(CUSTOMER_DAY))});
+    }
+
+    /* ---------- LIMITS ---------- */
+    private static final class Limit {
+        final String label;
+        final long maxCents;
+        final int maxCount;
+        final long bucketMillis;
+        final int buckets;
+
+        private Limit(String label, long maxCents, int maxCount, long bucketMillis, int buckets) {
+            this.label = label;
+            this.maxCents = maxCents;
+            this.maxCount = maxCount;
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+
+        static Limit of(String name, String label, long maxAmount, int maxCount, long bucketMillis, int buckets) {
+            String setting = System.getProperty("bank.limit." + name);
+            long maxCents = maxAmount * Money.CENTS_PER_UNIT;
+            if (setting != null) {
+                try {
+                    String[] parts = setting.split(",");
+                    maxCents = Money.parse(parts[0].trim());
+                    if (parts.length > 1) maxCount = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Limit warning: bank.limit." + name + ": " + e.getMessage());
+                }
+            }
+            return new Limit(label, maxCents, maxCount, bucketMillis, buckets);
+        }
+    }
+
+    /* ---------- WINDOWS ---------- */
+    private static final class Window {
+        final Limit limit;
+        private final long[] amounts;
+        private final int[] counts;
+        private long totalCents;
+        private int totalCount;
+        private long newest = Long.MIN_VALUE; // index of the newest bucket, as time / bucketMillis
+
+        Window(Limit limit) {
+            this.limit = limit;
+            this.amounts = new long[limit.buckets];
+            this.counts = new int[limit.buckets];
+        }
+
+        synchronized boolean tryAdd(long cents, long now) {
+            advance(now / limit.bucketMillis);
+            if (totalCents + cents > limit.maxCents || totalCount + 1 > limit.maxCount) return false;
+            int slot = slot(newest);
+            amounts[slot] += cents;
+            counts[slot]++;
+            totalCents += cents;
+            totalCount++;
+            return true;
+        }
+
+        synchronized void remove(long cents, long now) {
+            long bucket = Math.min(now / limit.bucketMillis, newest);
+            if (newest - bucket >= limit.buckets) return; // already expired
+            int slot = slot(bucket);
+            amounts[slot] -= cents;
+            counts[slot]--;
+            totalCents -= cents;
+            totalCount--;
+        }
+
+        // Clears the buckets that fell out of the window: at most one pass over the ring
+        private void advance(long bucket) {
+            if (bucket <= newest) return;
+            long expired = newest == Long.MIN_VALUE ? limit.buckets : Math.min(bucket - newest, limit.buckets);
+            for (long b = bucket - expired + 1; b <= bucket; b++) {
+                int slot = slot(b);
+                totalCents -= amounts[slot];
+                totalCount -= counts[slot];
+                amounts[slot] = 0;
+                counts[slot] = 0;
+            }
+            newest = bucket;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) limit.buckets);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of every mutation made since the last checkpoint.
+ * Each line is one operation, logged before it is applied and numbered with a log sequence
+ * number (LSN): lsn|OPERATION|arg|arg...|crc
+ * Arguments are escaped (PipeRecord.escape), so free text never adds a field or breaks the line.
+ * The trailing CRC32 lets replay tell a complete record from one torn by a crash.
+ * A checkpoint writes a snapshot that records the LSN it covers and then clears the log, so
+ * recovery only ever replays the records written since the latest checkpoint.
+ *
+ * Records are written behind the caller by a dedicated writer thread. Whatever has queued up
+ * while the previous batch was on disk goes out as one write (and at most one fsync), so
+ * concurrent postings share the cost of a flush instead of each paying for their own.
+ */
+public class WriteAheadLog {
+    private static final String LOG_FILE = "bank.wal";
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 1024;
+
+    /** When append returns relative to the record reaching disk */
+    public enum Durability {
+        FSYNC,      // after the batch holding the record has been forced to disk
+        WRITE,      // after the batch has been handed to the operating system
+        IMMEDIATE   // as soon as the record is queued
+    }
+
+    // A queued line, or a control entry (line == null) that truncates the log
+    private static final class Entry {
+        final String line;
+        final boolean force;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(String line, boolean force) {
+            this.line = line;
+            this.force = force;
+        }
+    }
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile Durability durability = Durability.FSYNC;
+    private final AtomicInteger pendingRecords = new AtomicInteger();
+    private long lastLsn;
+    private FileChannel channel; // only touched by the writer thread
+
+    public WriteAheadLog() {
+        Thread writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /* ---------- APPEND ---------- */
+    /* Logs one operation and returns once it is as durable as the current mode requires; throws
+       UncheckedIOException if the record could not be written, and the operation must not go ahead */
+    void append(String operation, Object... args) {
+        Durability mode = durability;
+        Entry entry;
+        synchronized (this) {
+            // LSNs are handed out in queue order so the file is always in LSN order
+            StringBuilder line = new StringBuilder(64).append(++lastLsn).append('|').append(operation);
+            for (Object arg : args) {
+                line.append('|').append(PipeRecord.escape(String.valueOf(arg)));
+            }
+            long crc = checksum(line);
+            line.append('|').append(Long.toHexString(crc));
+            entry = new Entry(line.toString(), mode == Durability.FSYNC);
+            enqueue(entry);
+        }
+        if (mode != Durability.IMMEDIATE) {
+            await(entry);
+        }
+        pendingRecords.incrementAndGet();
+    }
+
+    private static long checksum(CharSequence content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    Durability getDurability() {
+        return durability;
+    }
+
+    /* Blocks until every record queued so far is on disk; throws UncheckedIOException if they are not */
+    void sync() {
+        Entry barrier = new Entry("", true);
+        enqueue(barrier);
+        await(barrier);
+    }
+
+    private void enqueue(Entry entry) {
+        try {
+            queue.put(entry); // bounded: callers are held back if the writer falls behind
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.done.completeExceptionally(e);
+        }
+    }
+
+    private void await(Entry entry) {
+        try {
+            entry.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException
+                    ? new UncheckedIOException((IOException) cause)
+                    : new UncheckedIOException(new IOException("Log write interrupted", cause));
+        }
+    }
+
+    /* ---------- WRITER THREAD ---------- */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder text = new StringBuilder(64 * MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            int from = 0;
+            for (int i = 0; i <= batch.size(); i++) {
+                // A truncate entry splits the batch: lines before it are written, then dropped
+                if (i == batch.size() || batch.get(i).line == null) {
+                    flush(batch.subList(from, i), text);
+                    if (i < batch.size()) {
+                        truncate(batch.get(i));
+                    }
+                    from = i + 1;
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Entry> entries, StringBuilder text) {
+        if (entries.isEmpty()) return;
+        text.setLength(0);
+        boolean force = false;
+        for (Entry e : entries) {
+            if (!e.line.isEmpty()) {
+                text.append(e.line).append(System.lineSeparator());
+            }
+            force |= e.force;
+        }
+        long start = -1;
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(Paths.get(LOG_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            start = channel.size();
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (force) {
+                channel.force(false);
+            }
+            entries.forEach(e -> e.done.complete(null));
+        } catch (IOException e) {
+            System.out.println("Log error: " + e.getMessage());
+            // Records refused here must not come back on replay, nor a torn one hide the records after it
+            if (start >= 0) {
+                try {
+                    channel.truncate(start);
+                } catch (IOException truncateFailed) {
+                    e.addSuppressed(truncateFailed);
+                }
+            }
+            entries.forEach(en -> en.done.completeExceptionally(e));
+        }
+    }
+
+    private void truncate(Entry entry) {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            Files.deleteIfExists(Paths.get(LOG_FILE));
+            entry.done.complete(null);
+        } catch (IOException e) {
+            entry.done.completeExceptionally(e);
+        }
+    }
+
+    /* ---------- REPLAY ---------- */
+    /* Hands every record newer than the checkpoint to apply, in LSN order.
+       Fields are lsn, operation, then the arguments; the checksum is the last field.
+       A record that apply cannot take stops recovery: skipping it would lose an acknowledged change */
+    void replay(long checkpointLsn, Consumer<PipeRecord> apply) {
+        synchronized (this) {
+            lastLsn = Math.max(lastLsn, checkpointLsn);
+        }
+        if (!Files.exists(Paths.get(LOG_FILE))) return;
+
+        PipeRecord p = new PipeRecord();
+        try (BufferedReader in = PipeRecord.open(Paths.get(LOG_FILE))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int end = line.lastIndexOf('|');
+                if (end < 0 || !Long.toHexString(checksum(line.substring(0, end))).equals(line.substring(end + 1))) {
+                    break; // a torn last record from a crash; nothing after it was acknowledged
+                }
+                p.reset(line);
+                long lsn = Long.parseLong(p.get(0));
+                // Already covered by a snapshot committed just before the log was cleared
+                if (lsn <= checkpointLsn || p.size() < 3) continue;
+                try {
+                    apply.accept(p);
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Log replay failed at LSN " + lsn + ": " + e.getMessage(), e);
+                }
+                synchronized (this) {
+                    lastLsn = Math.max(lastLsn, lsn);
+                }
+                pendingRecords.incrementAndGet();
+            }
+        } catch (IOException e) {
+            System.out.println("Log replay warning: " + e.getMessage());
+        }
+    }
+
+    /* ---------- CHECKPOINT ---------- */
+    void clear() {
+        // Records queued before this point are already covered by the checkpoint just written
+        Entry truncate = new Entry(null, false);
+        enqueue(truncate);
+        try {
+            await(truncate);
+        } catch (UncheckedIOException e) {
+            // Harmless: replay skips records at or below the checkpoint's LSN
+            System.out.println("Log warning: " + e.getMessage());
+        }
+        pendingRecords.set(0);
+    }
+
+    int getPendingRecords() {
+        return pendingRecords.get();
+    }
+}